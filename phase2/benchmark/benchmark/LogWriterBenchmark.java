@@ -0,0 +1,199 @@
+package benchmark;
+
+import model.Durability;
+import model.LogWriter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compares appending log entries by opening a FileWriter for every entry, as Log used to, with
+ * appending through the LogWriter under each Durability. Every way of appending is warmed up
+ * first, then timed over several rounds that each start with a different one, so neither the JIT
+ * nor the page cache favours whichever runs first. It isn't part of the application, so it's
+ * built on its own, against the compiled model:
+ *
+ * <p>javac -d out/benchmark -cp out/production/phase2 benchmark/benchmark/*.java
+ *
+ * <p>java -cp out/production/phase2:out/benchmark benchmark.LogWriterBenchmark
+ *
+ * <p>Run with the number of entries, files, threads and rounds as optional arguments.
+ */
+public class LogWriterBenchmark {
+
+  /** the entry appended over and over */
+  private static final String ENTRY = "oldName @a / newName @a @b / 01/02/19 12:34:56\n";
+
+  /** how often PERIODIC durability forces the logs, in milliseconds */
+  private static final long PERIOD = 100;
+
+  /**
+   * Runs the benchmark and prints the entries per second of each way of appending.
+   *
+   * @param args the number of entries, files, threads and rounds, defaulting to 20000, 100, 8 and
+   *     5
+   * @throws Exception if the temporary directory can't be used
+   */
+  public static void main(String[] args) throws Exception {
+    int entries = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+    int files = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+    int threads = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+    int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+    File dir = Files.createTempDirectory("logwriter").toFile();
+    File[] logs = new File[files];
+    for (int i = 0; i < files; i++) {
+      logs[i] = new File(dir, ".file" + i + ".log");
+    }
+    Map<String, Appender> appenders = new LinkedHashMap<>();
+    appenders.put("FileWriter per entry", LogWriterBenchmark::appendOnce);
+    for (Durability durability : Durability.values()) {
+      appenders.put("LogWriter " + durability, logWriterAppender(durability));
+    }
+    List<String> names = new ArrayList<>(appenders.keySet());
+    Map<String, long[]> times = new LinkedHashMap<>();
+    for (String name : names) {
+      // Warm up, and leave the logs as long as a timed run finds them.
+      run(entries, logs, threads, appenders.get(name));
+      times.put(name, new long[rounds]);
+    }
+    for (int round = 0; round < rounds; round++) {
+      for (int i = 0; i < names.size(); i++) {
+        String name = names.get((round + i) % names.size());
+        times.get(name)[round] = run(entries, logs, threads, appenders.get(name));
+      }
+    }
+    for (String name : names) {
+      report(name, entries, times.get(name));
+    }
+    for (File log : logs) {
+      log.delete();
+    }
+    dir.delete();
+  }
+
+  /**
+   * Returns a way of appending through the LogWriter with the given durability.
+   *
+   * @param durability the durability
+   * @return Appender
+   */
+  private static Appender logWriterAppender(Durability durability) {
+    return new Appender() {
+      @Override
+      public void start() {
+        LogWriter.getInstance().setDurability(durability);
+        LogWriter.getInstance().setPeriod(PERIOD);
+      }
+
+      @Override
+      public void append(File log, String entry) throws IOException {
+        LogWriter.getInstance().append(log, entry);
+      }
+
+      @Override
+      public void finish() {
+        LogWriter.getInstance().closeAll();
+      }
+    };
+  }
+
+  /**
+   * Appends entries to the logs round-robin from several threads.
+   *
+   * @param entries the number of entries to append
+   * @param logs the log files
+   * @param threads the number of threads appending at once
+   * @param appender how to append one entry
+   * @return the time taken in nanoseconds, including finishing
+   * @throws Exception if an entry couldn't be appended
+   */
+  private static long run(int entries, File[] logs, int threads, Appender appender)
+      throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    appender.start();
+    long start = System.nanoTime();
+    try {
+      List<Future<?>> futures = new ArrayList<>(entries);
+      for (int i = 0; i < entries; i++) {
+        File log = logs[i % logs.length];
+        futures.add(
+            executor.submit(
+                () -> {
+                  appender.append(log, ENTRY);
+                  return null;
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      appender.finish();
+    } finally {
+      executor.shutdown();
+    }
+    return System.nanoTime() - start;
+  }
+
+  /**
+   * Appends an entry the way Log did before LogWriter, opening and closing the file.
+   *
+   * @param log the log file
+   * @param entry the entry
+   * @throws IOException if the entry couldn't be written
+   */
+  private static void appendOnce(File log, String entry) throws IOException {
+    BufferedWriter writer = new BufferedWriter(new FileWriter(log, true));
+    writer.append(entry);
+    writer.flush();
+    writer.close();
+  }
+
+  /**
+   * Prints how fast the rounds of a way of appending were, by their median.
+   *
+   * @param name the way of appending
+   * @param entries the number of entries appended in each round
+   * @param times the time each round took in nanoseconds
+   */
+  private static void report(String name, int entries, long[] times) {
+    long[] sorted = times.clone();
+    Arrays.sort(sorted);
+    long median = sorted[sorted.length / 2];
+    System.out.printf(
+        "%-22s %10.1f ms %12.0f entries/s (%.1f-%.1f ms)%n",
+        name,
+        median / 1e6,
+        entries * 1e9 / median,
+        sorted[0] / 1e6,
+        sorted[sorted.length - 1] / 1e6);
+  }
+
+  /** A way of appending one entry to a log file. */
+  private interface Appender {
+
+    /** Prepares for a run. */
+    default void start() {}
+
+    /**
+     * Appends an entry to a log file.
+     *
+     * @param log the log file
+     * @param entry the entry
+     * @throws IOException if the entry couldn't be written
+     */
+    void append(File log, String entry) throws IOException;
+
+    /** Finishes a run, once every entry was appended. */
+    default void finish() {}
+  }
+}
@@ -3,19 +3,40 @@ package model;
 import javafx.scene.image.Image;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 
 /** Represents a physical image file in a filesystem. */
-public abstract class AbsTaggableFile extends Observable implements Observer, Taggable {
+public abstract class AbsTaggableFile implements Taggable {
 
-  private static final String TAG_MARKER = "@";
+  static final String TAG_MARKER = "@";
 
   /** the image file in the system */
-  private File file;
+  private volatile File file;
 
   /** the previous names for the file */
   private Log log;
 
+  /** the attributes of the file, or null if they haven't been read yet */
+  private BasicFileAttributes attributes;
+
+  /** the name and tags parsed from the file's name, or null until it's first parsed */
+  private volatile ParsedName parsedName;
+
+  /** the ids of the tags in the previous names in the log, in the order they first appear */
+  private int[] historyTagIds;
+
+  /** the number of ids in historyTagIds, or -1 until the log is read */
+  private int historySize = -1;
+
+  /** the ids in historyTagIds */
+  private BitSet historySeen;
+
+  /** where renames and moves are published, or null if nothing listens */
+  private TagEventBus eventBus;
+
   /**
    * Construct a new ImageFile object with a given path.
    *
@@ -42,13 +63,21 @@ public abstract class AbsTaggableFile extends Observable implements Observer, Ta
    * @return Whether this moving of the ImageFile was successful
    */
   public boolean moveFile(String newPath) {
+    String oldPath = file.getParent();
     File newFile = new File(newPath, file.getName());
-    boolean ret1 = file.renameTo(newFile);
-    boolean ret2 = log.moveFile(newPath);
-    boolean ret = ret1 && ret2;
+    boolean ret = file.renameTo(newFile);
+    if (ret && !log.moveFile(newPath)) {
+      // Keep the file with its log.
+      newFile.renameTo(file);
+      ret = false;
+    }
     if (ret) {
       if (newFile.exists()) {
         file = newFile;
+        attributes = null;
+        if (eventBus != null) {
+          eventBus.publish(TagEvent.fileMoved(this, oldPath));
+        }
       }
     }
     return ret;
@@ -60,42 +89,156 @@ public abstract class AbsTaggableFile extends Observable implements Observer, Ta
    * @return a String[] of associated tags.
    */
   public String[] getTags() {
-    return extractTags(getName());
+    return TagDictionary.getInstance().getTags(getParsedTagIds());
+  }
+
+  /**
+   * gets the ids of all the tags associated to the image file in the global TagDictionary.
+   *
+   * @return an int[] of the ids of the associated tags.
+   */
+  public int[] getTagIds() {
+    return getParsedTagIds().clone();
+  }
+
+  /**
+   * Returns the ids of the tags in the name of the file. Only the ids are kept; the tags
+   * themselves are looked up in the TagDictionary. The returned array is the cached one, so it
+   * must not be modified.
+   *
+   * @return an int[] of the ids of the associated tags
+   */
+  private int[] getParsedTagIds() {
+    return getParsedName().tagIds;
+  }
+
+  /**
+   * Returns the name and tags of the file, parsing its name only if the file changed since it was
+   * last parsed. A parse of an older file stored by another thread is noticed and replaced, since
+   * its source isn't the current file.
+   *
+   * @return ParsedName
+   */
+  private ParsedName getParsedName() {
+    File current = file;
+    ParsedName parsed = parsedName;
+    if (parsed == null || parsed.source != current) {
+      parsed = new ParsedName(current);
+      parsedName = parsed;
+    }
+    return parsed;
   }
 
-  /** Extracts the Tags in a given string */
-  private String[] extractTags(String stringWithTags) {
-    List<String> tags = new ArrayList<>();
-    String[] slicedString = stringWithTags.split(" ");
-    for (String word : slicedString) {
+  /**
+   * Extracts the Tags in a given string, as the single instances kept by the TagDictionary. A tag
+   * is any space separated word that starts with the tag marker. The string is scanned once,
+   * without splitting it or building any intermediate collection.
+   *
+   * @param stringWithTags the string to find the tags in
+   * @return a String[] of the tags, in the order they appear
+   */
+  static String[] extractTags(String stringWithTags) {
+    char marker = TAG_MARKER.charAt(0);
+    // The start and end of each tag found, packed into pairs.
+    int[] bounds = null;
+    int count = 0;
+    int length = stringWithTags.length();
+    int wordStart = 0;
+    while (wordStart <= length) {
+      int wordEnd = wordStart;
+      while (wordEnd < length && stringWithTags.charAt(wordEnd) != ' ') {
+        wordEnd++;
+      }
       // Check each word to see if its format indicates it's a tag.
-      if (word.length() >= TAG_MARKER.length()
-          && word.substring(0, TAG_MARKER.length()).equals(TAG_MARKER)) {
-        tags.add(word.substring(1));
+      if (wordEnd > wordStart && stringWithTags.charAt(wordStart) == marker) {
+        if (bounds == null) {
+          bounds = new int[8];
+        } else if (count * 2 == bounds.length) {
+          bounds = Arrays.copyOf(bounds, bounds.length * 2);
+        }
+        bounds[count * 2] = wordStart + 1;
+        bounds[count * 2 + 1] = wordEnd;
+        count++;
+      }
+      wordStart = wordEnd + 1;
+    }
+    String[] tags = new String[count];
+    TagDictionary dictionary = TagDictionary.getInstance();
+    for (int i = 0; i < count; i++) {
+      tags[i] = dictionary.intern(stringWithTags.substring(bounds[i * 2], bounds[i * 2 + 1]));
+    }
+    return tags;
+  }
+
+  /**
+   * gets all the tags that were previously associated to the image file. The log is only read the
+   * first time; after that each rename adds its previous name's tags to the cached history.
+   *
+   * @return a String[] of previously associated tags, in the order they first appear in the log.
+   */
+  public synchronized String[] getPreviousTags() {
+    loadHistory();
+    BitSet current = new BitSet();
+    for (int currentTagId : getTagIds()) {
+      current.set(currentTagId);
+    }
+    TagDictionary dictionary = TagDictionary.getInstance();
+    List<String> tags = new ArrayList<>(historySize);
+    for (int i = 0; i < historySize; i++) {
+      if (!current.get(historyTagIds[i])) {
+        tags.add(dictionary.getTag(historyTagIds[i]));
       }
     }
     return tags.toArray(new String[tags.size()]);
   }
 
+  /** Reads the tags of the previous names in the log, if they haven't been read yet. */
+  private void loadHistory() {
+    if (historySize >= 0) {
+      return;
+    }
+    historyTagIds = new int[8];
+    historySize = 0;
+    historySeen = new BitSet();
+    for (String previousName : log.getColumn(0)) {
+      addHistory(previousName);
+    }
+  }
+
+  /**
+   * Adds the tags of a name that was just logged as a previous name, if the log has been read.
+   *
+   * @param previousName the name
+   */
+  private synchronized void recordHistory(String previousName) {
+    if (historySize >= 0) {
+      addHistory(previousName);
+    }
+  }
+
   /**
-   * gets all the tags that were previously associated to the image file.
+   * Adds the tags of a previous name that aren't in the history yet.
    *
-   * @return a String[] of previously associated tags.
+   * @param previousName the name
    */
-  @SuppressWarnings("ResultOfMethodCallIgnored")
-  public String[] getPreviousTags() {
-    Set<String> tags = new HashSet<>();
-    String[] currentTags = getTags();
-    String[] previousNames = log.getColumn(0);
-    for (String previousName : previousNames) {
-      String[] potentialTags = extractTags(previousName);
-      for (String potentialTag : potentialTags) {
-        if (!Arrays.asList(currentTags).contains(potentialTag)) {
-          tags.add(potentialTag);
+  private void addHistory(String previousName) {
+    for (String tag : extractTags(previousName)) {
+      int tagId = TagDictionary.getInstance().getId(tag);
+      if (!historySeen.get(tagId)) {
+        historySeen.set(tagId);
+        if (historySize == historyTagIds.length) {
+          historyTagIds = Arrays.copyOf(historyTagIds, 2 * historySize);
         }
+        historyTagIds[historySize++] = tagId;
       }
     }
-    return tags.toArray(new String[tags.size()]);
+  }
+
+  /** Forgets the history read from the log, so it is read again when next needed. */
+  private synchronized void clearHistory() {
+    historyTagIds = null;
+    historySize = -1;
+    historySeen = null;
   }
 
   /**
@@ -106,15 +249,14 @@ public abstract class AbsTaggableFile extends Observable implements Observer, Ta
    */
   public boolean addTag(String[] newTags) {
     boolean success = false;
+    Set<String> presentTags = new HashSet<>(Arrays.asList(getTags()));
     StringBuilder str = new StringBuilder(getName());
     for (String tag : newTags) {
-      if (tag != null
-          && tag.length() > 0
-          && !Arrays.asList(extractTags(str.toString())).contains(tag)) {
-        str.append(String.format(" %s%s", TAG_MARKER, tag));
+      if (tag != null && tag.length() > 0 && presentTags.add(tag)) {
+        str.append(' ').append(TAG_MARKER).append(tag);
       }
     }
-    if (!str.toString().equals(getName())) {
+    if (str.length() != getName().length()) {
       try {
         success = rename(str.toString());
       } catch (Exception e) {
@@ -133,20 +275,65 @@ public abstract class AbsTaggableFile extends Observable implements Observer, Ta
    */
   public boolean removeTag(String[] thisTags) {
     boolean ret = false;
-    String str = getName();
+    Set<String> tagsToRemove = new HashSet<>(thisTags.length);
     for (String tag : thisTags) {
-      if (tag != null && str.contains(tag) && tag.length() > 0) {
-        str = str.replaceAll(String.format(" %s\\b%s\\b", TAG_MARKER, tag), "");
+      if (tag != null && tag.length() > 0) {
+        tagsToRemove.add(tag);
       }
     }
-    try {
-      ret = rename(str);
-    } catch (Exception e) {
-      e.printStackTrace();
+    String str = removeTags(getName(), tagsToRemove);
+    if (!str.equals(getName())) {
+      try {
+        ret = rename(str);
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
     }
     return ret;
   }
 
+  /**
+   * Removes every occurrence of the given tags from a name in one pass. Only whole tags after the
+   * first word are removed, along with the space before them, so the rest of the name is kept as
+   * it is.
+   *
+   * @param name the name to remove the tags from
+   * @param tags the String representations of the tags to remove
+   * @return the name without the tags
+   */
+  static String removeTags(String name, Set<String> tags) {
+    if (tags.isEmpty()) {
+      return name;
+    }
+    char marker = TAG_MARKER.charAt(0);
+    StringBuilder ret = null;
+    // The end of the part of name that has already been copied into ret.
+    int copied = 0;
+    int length = name.length();
+    int wordStart = name.indexOf(' ') + 1;
+    while (wordStart > 0 && wordStart <= length) {
+      int wordEnd = name.indexOf(' ', wordStart);
+      if (wordEnd == -1) {
+        wordEnd = length;
+      }
+      if (wordEnd > wordStart
+          && name.charAt(wordStart) == marker
+          && tags.contains(name.substring(wordStart + 1, wordEnd))) {
+        if (ret == null) {
+          ret = new StringBuilder(length);
+        }
+        // Copy up to the space before the tag, then skip the space and the tag.
+        ret.append(name, copied, wordStart - 1);
+        copied = wordEnd;
+      }
+      wordStart = wordEnd + 1;
+    }
+    if (ret == null) {
+      return name;
+    }
+    return ret.append(name, copied, length).toString();
+  }
+
   /**
    * Tries to updateLog the image with the newName
    *
@@ -154,29 +341,80 @@ public abstract class AbsTaggableFile extends Observable implements Observer, Ta
    * @return true if renaming is successful, false if it isn't.
    */
   public boolean rename(String newName) throws Exception {
+    return rename(newName, true);
+  }
+
+  /**
+   * Tries to rename the image with the newName, only publishing the rename on the event bus if
+   * publish is true. Callers that rename many files at once pass false and publish the renames
+   * together.
+   *
+   * @param newName a String to try and rename the image with.
+   * @param publish whether to publish the rename
+   * @return true if renaming is successful, false if it isn't.
+   */
+  boolean rename(String newName, boolean publish) throws Exception {
     String lastName = getName();
     File newFile = new File(file.getParent(), newName + getSuffix());
     boolean ret = false;
     if (!newFile.exists() && file.renameTo(newFile)) {
+      File oldFile = file;
       file = newFile;
-      ret = log.updateLog(lastName, newName, file.getName());
+      attributes = null;
+      try {
+        ret = log.updateLog(lastName, newName, file.getName());
+      } catch (Exception e) {
+        // The log kept the old name, so keep the file with it.
+        if (newFile.renameTo(oldFile)) {
+          file = oldFile;
+        }
+        throw e;
+      }
+      recordHistory(lastName);
+    }
+    if (publish && ret && eventBus != null) {
+      eventBus.publish(TagEvent.fileRenamed(this, lastName));
     }
-    setChanged();
-    notifyObservers();
     return ret;
   }
 
+  /**
+   * Sets the journal this file logs its history in.
+   *
+   * @param journal the journal, or null to use a hidden log file
+   */
+  void setJournal(Journal journal) {
+    log.setJournal(journal);
+    clearHistory();
+  }
+
+  /**
+   * Sets the bus this file publishes its renames and moves on.
+   *
+   * @param eventBus the bus, or null to stop publishing
+   */
+  void setEventBus(TagEventBus eventBus) {
+    this.eventBus = eventBus;
+  }
+
   /**
    * Returns the name of an image with no suffix.
    *
    * @return the name of an image.
    */
   public String getName() {
-    String ret = file.getName();
-    if (file.getName().lastIndexOf(".") != -1) {
-      ret = file.getName().substring(0, file.getName().lastIndexOf("."));
-    }
-    return ret;
+    return getParsedName().name;
+  }
+
+  /**
+   * Returns the given file name with its suffix removed.
+   *
+   * @param fileName the name of a file, including its suffix
+   * @return the name without its suffix
+   */
+  static String stripSuffix(String fileName) {
+    int dot = fileName.lastIndexOf('.');
+    return dot == -1 ? fileName : fileName.substring(0, dot);
   }
 
   /**
@@ -185,11 +423,9 @@ public abstract class AbsTaggableFile extends Observable implements Observer, Ta
    * @return the suffix of an image
    */
   private String getSuffix() {
-    String ret = "";
-    if (file.getName().lastIndexOf(".") != -1) {
-      ret = file.getName().substring(file.getName().lastIndexOf("."));
-    }
-    return ret;
+    String fileName = file.getName();
+    int dot = fileName.lastIndexOf('.');
+    return dot == -1 ? "" : fileName.substring(dot);
   }
 
   /**
@@ -218,6 +454,32 @@ public abstract class AbsTaggableFile extends Observable implements Observer, Ta
     return file;
   }
 
+  /**
+   * Returns the attributes of this file, reading them from the filesystem only if they weren't
+   * already read while scanning.
+   *
+   * @return BasicFileAttributes, or null if they can't be read
+   */
+  public BasicFileAttributes getAttributes() {
+    if (attributes == null) {
+      try {
+        attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+    return attributes;
+  }
+
+  /**
+   * Sets the attributes of this file that were read while scanning.
+   *
+   * @param attributes the attributes of this file
+   */
+  void setAttributes(BasicFileAttributes attributes) {
+    this.attributes = attributes;
+  }
+
   /**
    * Checks if object insistence of AbsTaggableFile
    *
@@ -232,23 +494,22 @@ public abstract class AbsTaggableFile extends Observable implements Observer, Ta
   }
 
   /**
-   * Update the ImageFile when a tag is deleted from the TagManager.
+   * Return a list of String representation of tags in the log file.
    *
-   * @param o the observable object that updates the observer ImageFile when a Tag is deleted
-   * @param arg pass in argument
+   * @return A list of String representation of tags in log
    */
-  @Override
-  public void update(Observable o, Object arg) {
-    removeTag(((TagManager) o).getLastErasedTag());
+  public String[] getLog() {
+    return log.getLog();
   }
 
   /**
-   * Return a list of String representation of tags in the log file.
+   * Returns the lines of the log as they are now, in the same format as getLog. Each line is only
+   * read when it is asked for.
    *
-   * @return A list of String representation of tags in log
+   * @return an unmodifiable List of the lines, which doesn't change when the log does
    */
-  public String[] getLog() {
-    return log.getLog();
+  public List<String> getLogLines() {
+    return log.getRows();
   }
 
   /**
@@ -260,4 +521,28 @@ public abstract class AbsTaggableFile extends Observable implements Observer, Ta
   public int hashCode() {
     return file.getAbsolutePath().hashCode();
   }
+
+  /** The name and tags parsed from a file's name, which never change once parsed. */
+  private static class ParsedName {
+
+    /** the file whose name was parsed */
+    private final File source;
+
+    /** the name of the file without its suffix */
+    private final String name;
+
+    /** the ids of the tags in the name in the TagDictionary */
+    private final int[] tagIds;
+
+    /**
+     * Parses the name of a file.
+     *
+     * @param source the file whose name to parse
+     */
+    private ParsedName(File source) {
+      this.source = source;
+      name = stripSuffix(source.getName());
+      tagIds = TagDictionary.getInstance().getIds(extractTags(name));
+    }
+  }
 }
@@ -0,0 +1,151 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** The outcome of applying a TagBatch to each of its files. */
+public class BatchResult {
+
+  /** the files that were renamed, in the order they finished */
+  private final List<AbsTaggableFile> succeeded;
+
+  /** the names the renamed files had before the batch */
+  private final Map<AbsTaggableFile, String> oldNames;
+
+  /** the files that were already as planned, so didn't need renaming */
+  private final List<AbsTaggableFile> unchanged;
+
+  /** the files that couldn't be renamed, with the reason if there was one */
+  private final Map<AbsTaggableFile, Exception> failed;
+
+  /** the renamed files that couldn't be renamed back, with the reason */
+  private final Map<AbsTaggableFile, Exception> rollbackFailed;
+
+  /** whether the renamed files were renamed back because some file failed */
+  private boolean rolledBack;
+
+  /** Construct a new, empty BatchResult. */
+  BatchResult() {
+    succeeded = new ArrayList<>();
+    unchanged = new ArrayList<>();
+    failed = new IdentityHashMap<>();
+    oldNames = new IdentityHashMap<>();
+    rollbackFailed = new IdentityHashMap<>();
+  }
+
+  /**
+   * Records a file that was renamed.
+   *
+   * @param absTaggableFile the file
+   * @param oldName the name of the file before it was renamed
+   */
+  synchronized void addSucceeded(AbsTaggableFile absTaggableFile, String oldName) {
+    succeeded.add(absTaggableFile);
+    oldNames.put(absTaggableFile, oldName);
+  }
+
+  /**
+   * Returns the name a renamed file had before it was renamed.
+   *
+   * @param absTaggableFile the file
+   * @return the old name, or null if the file wasn't renamed
+   */
+  synchronized String getOldName(AbsTaggableFile absTaggableFile) {
+    return oldNames.get(absTaggableFile);
+  }
+
+  /**
+   * Records a file that didn't need renaming.
+   *
+   * @param absTaggableFile the file
+   */
+  synchronized void addUnchanged(AbsTaggableFile absTaggableFile) {
+    unchanged.add(absTaggableFile);
+  }
+
+  /**
+   * Records a file that couldn't be renamed.
+   *
+   * @param absTaggableFile the file
+   * @param e the reason, or null if the rename just returned false
+   */
+  synchronized void addFailed(AbsTaggableFile absTaggableFile, Exception e) {
+    failed.put(absTaggableFile, e);
+  }
+
+  /**
+   * Records a renamed file that couldn't be renamed back.
+   *
+   * @param absTaggableFile the file
+   * @param e the reason
+   */
+  synchronized void addRollbackFailed(AbsTaggableFile absTaggableFile, Exception e) {
+    rollbackFailed.put(absTaggableFile, e);
+  }
+
+  /** Records that the renamed files were renamed back. */
+  synchronized void setRolledBack() {
+    rolledBack = true;
+  }
+
+  /**
+   * Returns the files that were renamed. If the batch was rolled back these have their old names
+   * again.
+   *
+   * @return an unmodifiable List of the files
+   */
+  public synchronized List<AbsTaggableFile> getSucceeded() {
+    return Collections.unmodifiableList(new ArrayList<>(succeeded));
+  }
+
+  /**
+   * Returns the files that already matched the plan.
+   *
+   * @return an unmodifiable List of the files
+   */
+  public synchronized List<AbsTaggableFile> getUnchanged() {
+    return Collections.unmodifiableList(new ArrayList<>(unchanged));
+  }
+
+  /**
+   * Returns the files that couldn't be renamed, each with the exception that stopped it, or null
+   * if the rename just didn't happen (for example because a file with the new name exists).
+   *
+   * @return an unmodifiable Map of the files
+   */
+  public synchronized Map<AbsTaggableFile, Exception> getFailed() {
+    return Collections.unmodifiableMap(new IdentityHashMap<>(failed));
+  }
+
+  /**
+   * Returns the renamed files that couldn't be renamed back when the batch was rolled back, each
+   * with the exception that stopped it. These files keep their new names.
+   *
+   * @return an unmodifiable Map of the files
+   */
+  public synchronized Map<AbsTaggableFile, Exception> getRollbackFailed() {
+    return Collections.unmodifiableMap(new IdentityHashMap<>(rollbackFailed));
+  }
+
+  /**
+   * Returns whether every file was either renamed or already matched the plan.
+   *
+   * @return boolean
+   */
+  public synchronized boolean isSuccessful() {
+    return failed.isEmpty();
+  }
+
+  /**
+   * Returns whether the renamed files were renamed back because some file failed. Any that
+   * couldn't be are in getRollbackFailed.
+   *
+   * @return boolean
+   */
+  public synchronized boolean isRolledBack() {
+    return rolledBack;
+  }
+}
@@ -0,0 +1,14 @@
+package model;
+
+/** How hard the LogWriter tries to get entries onto the disk before returning. */
+public enum Durability {
+  /** every group commit is forced to the disk before the writers return */
+  SYNC,
+  /**
+   * entries are forced to the disk within a period of being written, even if nothing is written
+   * after them, so a crash can only lose the last period's entries
+   */
+  PERIODIC,
+  /** entries are left to the operating system to write, like the original FileWriter logs */
+  NONE
+}
@@ -0,0 +1,84 @@
+package model;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/** Maps file extensions to the type of file ("Image", "Text", "Audio", ...) they belong to. */
+public class FileTypeRegistry {
+  /** the type of all image files */
+  public static final String IMAGE = "Image";
+
+  /** the type of all text files */
+  public static final String TEXT = "Text";
+
+  /** the type of all audio files */
+  public static final String AUDIO = "Audio";
+
+  /** the type each lowercase extension belongs to */
+  private final Map<String, String> typesByExtension;
+
+  /** all the registered types, in the order they were registered */
+  private final Set<String> types;
+
+  /** Construct a new FileTypeRegistry with the Image, Text and Audio types registered. */
+  public FileTypeRegistry() {
+    typesByExtension = new HashMap<>();
+    types = new LinkedHashSet<>();
+    register(IMAGE, "jpg", "jpeg", "png", "gif", "bmp");
+    register(TEXT, "txt", "doc", "docx", "odt", "pdf", "rtf", "tex");
+    register(
+        AUDIO, "aif", "cda", "mid", "midi", "mp3", "mp4", "mpa", "ogg", "wav", "wma", "wpl");
+  }
+
+  /**
+   * Registers the given extensions as belonging to the given type. An extension that already
+   * belongs to another type is moved to this one.
+   *
+   * @param type the name of the type, such as "Image"
+   * @param extensions the extensions of the type, without the leading "."
+   */
+  public void register(String type, String... extensions) {
+    types.add(type);
+    for (String extension : extensions) {
+      typesByExtension.put(extension.toLowerCase(Locale.ROOT), type);
+    }
+  }
+
+  /**
+   * Returns the type of the file with the given name.
+   *
+   * @param fileName the name of the file
+   * @return the type of the file, or null if its extension isn't registered
+   */
+  public String getType(String fileName) {
+    int dot = fileName.lastIndexOf('.');
+    if (dot == -1) {
+      return null;
+    }
+    return typesByExtension.get(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+  }
+
+  /**
+   * Returns whether the file with the given name is of the given type.
+   *
+   * @param fileName the name of the file
+   * @param type the type to check for
+   * @return true if the file's extension is registered to type
+   */
+  public boolean isType(String fileName, String type) {
+    return type != null && type.equals(getType(fileName));
+  }
+
+  /**
+   * Returns all the registered types.
+   *
+   * @return an unmodifiable Set of the types, in the order they were registered
+   */
+  public Set<String> getTypes() {
+    return Collections.unmodifiableSet(types);
+  }
+}
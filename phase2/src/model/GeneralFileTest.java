@@ -7,6 +7,7 @@ import org.junit.rules.TemporaryFolder;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static junit.framework.TestCase.assertTrue;
 import static org.junit.Assert.assertEquals;
@@ -41,7 +42,19 @@ public class GeneralFileTest {
     File expectedResult = new File(aFolder.getPath(), TEST_FILE_NAME);
     File expectedResult1 = new File(aFolder.getPath(), "." + TEST_FILE_NAME + ".log");
     assertTrue(expectedResult.exists());
-    assertTrue(expectedResult1.exists());
+    // Nothing has been logged for the file yet, so it has no log file to move.
+    assertFalse(expectedResult1.exists());
+  }
+
+  @Test
+  public void moveFileWithLog() throws Exception {
+    generalFile.addTag(new String[] {"tag"});
+    File aFolder = folder.newFolder("aFolder");
+    generalFile.moveFile(aFolder.getPath());
+    File logFile = new File(aFolder.getPath(), "." + generalFile.getFile().getName() + ".log");
+    assertTrue(generalFile.getFile().exists());
+    assertTrue(logFile.exists());
+    assertFalse(new File(folder.getRoot(), logFile.getName()).exists());
   }
 
   @Test
@@ -66,6 +79,38 @@ public class GeneralFileTest {
     Assert.assertArrayEquals(expectedResult, generalFile.getTags());
   }
 
+  @Test
+  public void getTagsAfterAddingAndRemovingTags() throws Exception {
+    Assert.assertArrayEquals(new String[0], generalFile.getTags());
+    generalFile.addTag(new String[] {"tag", "tag2", "tag"});
+    Assert.assertArrayEquals(new String[] {"tag", "tag2"}, generalFile.getTags());
+    generalFile.removeTag(new String[] {"tag"});
+    Assert.assertArrayEquals(new String[] {"tag2"}, generalFile.getTags());
+  }
+
+  @Test
+  public void getTagsWhileRenamedOnAnotherThread() throws Exception {
+    AtomicBoolean renaming = new AtomicBoolean(true);
+    Thread reader =
+        new Thread(
+            () -> {
+              while (renaming.get()) {
+                generalFile.getTagIds();
+                generalFile.getName();
+              }
+            });
+    reader.start();
+    for (int i = 0; i < 200; i++) {
+      generalFile.addTag(new String[] {"tag" + i});
+      generalFile.removeTag(new String[] {"tag" + i});
+    }
+    generalFile.addTag(new String[] {"last"});
+    renaming.set(false);
+    reader.join();
+    Assert.assertArrayEquals(new String[] {"last"}, generalFile.getTags());
+    assertEquals(TEST_FILE_NAME + " @last", generalFile.getName());
+  }
+
   @Test
   public void getPreviousTagsWithNoPreviousTags() throws Exception {
     String[] expectedResult = new String[0];
@@ -93,6 +138,19 @@ public class GeneralFileTest {
     Assert.assertArrayEquals(expectedResults, generalFile.getPreviousTags());
   }
 
+  @Test
+  public void getPreviousTagsFollowsRenamesWithoutRereadingTheLog() throws Exception {
+    generalFile.addTag(new String[] {"tag", "tag2"});
+    Assert.assertArrayEquals(new String[0], generalFile.getPreviousTags());
+    File logFile =
+        new File(testFile.getParentFile(), "." + generalFile.getFile().getName() + ".log");
+    // Once the history is cached, later previous names are added without reading the log.
+    assertTrue(logFile.delete());
+    generalFile.removeTag(new String[] {"tag"});
+    generalFile.removeTag(new String[] {"tag2"});
+    Assert.assertArrayEquals(new String[] {"tag", "tag2"}, generalFile.getPreviousTags());
+  }
+
   @Test
   public void getPreviousTagsWithMultipleTagsAndNoCurrent() throws Exception {
     File logFile = new File(testFile.getParentFile(), "." + testFile.getName() + ".log");
@@ -136,6 +194,16 @@ public class GeneralFileTest {
     assertFalse(shouldntExist.exists());
   }
 
+  @Test
+  public void removeTagsWithSpecialCharacters() throws Exception {
+    File fileWithTags = folder.newFile("fileName @c++ @tag @tag2 @(tag)");
+    generalFile = new GeneralFile(fileWithTags);
+    generalFile.removeTag(new String[] {"c++", "tag", "(tag)"});
+    File expectedResults = new File(folder.getRoot(), "fileName @tag2");
+    assertTrue(expectedResults.exists());
+    assertFalse(fileWithTags.exists());
+  }
+
   @Test
   public void rename() throws Exception {
     generalFile.rename("newName");
@@ -145,6 +213,24 @@ public class GeneralFileTest {
     assertFalse(shouldntExist.exists());
   }
 
+  @Test
+  public void renameIsUndoneWhenTheLogCantBeRenamed() throws Exception {
+    assertTrue(generalFile.addTag(new String[] {"tag"}));
+    File taggedFile = generalFile.getFile();
+    File taggedLog = new File(folder.getRoot(), "." + taggedFile.getName() + ".log");
+    // A directory in the way of the renamed log makes renaming the log fail.
+    assertTrue(new File(folder.getRoot(), "." + TEST_FILE_NAME + " @tag @tag2.log").mkdir());
+    assertFalse(generalFile.addTag(new String[] {"tag2"}));
+    assertEquals(taggedFile, generalFile.getFile());
+    assertTrue(taggedFile.exists());
+    assertFalse(new File(folder.getRoot(), TEST_FILE_NAME + " @tag @tag2").exists());
+    assertEquals(TEST_FILE_NAME + " @tag", generalFile.getName());
+    // The log is still the file's, so the next rename is logged after the first one.
+    assertTrue(generalFile.addTag(new String[] {"tag3"}));
+    assertFalse(taggedLog.exists());
+    assertEquals(2, generalFile.getLog().length);
+  }
+
   @Test
   public void getName() throws Exception {
     String expectedResult = testFile.getName();
@@ -169,24 +255,6 @@ public class GeneralFileTest {
     assertEquals(expectedResult, generalFile);
   }
 
-  @Test
-  public void update() throws Exception {
-    File fileWithTag = folder.newFile("fileName @tag");
-    generalFile = new GeneralFile(fileWithTag);
-    TagManager tagManager =
-        new TagManager() {
-          @Override
-          public String[] getLastErasedTag() {
-            return new String[] {"tag"};
-          }
-        };
-    generalFile.update(tagManager, null);
-    File expectedResult = new File(folder.getRoot(), "fileName");
-    File shouldntExist = fileWithTag;
-    assertTrue(expectedResult.exists());
-    assertFalse(shouldntExist.exists());
-  }
-
   @Test
   public void testHashCode() throws Exception {
     int expectedResult = testFile.getAbsolutePath().hashCode();
@@ -0,0 +1,43 @@
+package model;
+
+import java.io.File;
+
+/** A LogEntry together with the file it was logged for, as found by a TagHistory query. */
+public class HistoryEntry extends LogEntry {
+
+  /** the file the entry was logged for */
+  private final File file;
+
+  /**
+   * Construct a new HistoryEntry.
+   *
+   * @param file the file the entry was logged for
+   * @param first the first entry
+   * @param second the second entry
+   * @param time when the line was logged, in milliseconds since the epoch
+   */
+  public HistoryEntry(File file, String first, String second, long time) {
+    super(first, second, time);
+    this.file = file;
+  }
+
+  /**
+   * Returns the file the entry was logged for. Files in a Journal are given by their latest path,
+   * and files with a hidden log file by the path the log file is for.
+   *
+   * @return File
+   */
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Generate a string of the file followed by the entry.
+   *
+   * @return String
+   */
+  @Override
+  public String toString() {
+    return file + ": " + super.toString();
+  }
+}
@@ -0,0 +1,591 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * An append-only journal of the log entries of every file under a root, kept in numbered segment
+ * files in a hidden directory of the root instead of a hidden log next to each file. Files are
+ * known by a stable id, so renaming or moving a file appends a record instead of renaming a log.
+ * The positions of each file's entries are indexed when the journal is opened, so reading one
+ * file's history only reads its own records, and each segment has a SparseTimeIndex, so reading the
+ * entries logged in a time range only reads the parts of the segments they can be in.
+ */
+public class Journal {
+
+  /** the name of the directory under the root that holds the segments */
+  static final String DIRECTORY = ".journal";
+
+  /** the suffix of segment files */
+  private static final String SEGMENT_SUFFIX = ".seg";
+
+  /** the size past which a new segment is started */
+  private static final long SEGMENT_SIZE = 4 << 20;
+
+  /** a record of a log entry of a file */
+  private static final byte ENTRY = 1;
+
+  /** a record of the path of a file, written when the file is first journaled or renamed */
+  private static final byte PATH = 2;
+
+  /** the open journals, by the canonical path of their root */
+  private static final Map<File, Journal> journals = new HashMap<>();
+
+  /** the directory the journaled files are under */
+  private final File root;
+
+  /** the directory holding the segments */
+  private final File directory;
+
+  /** the id of each journaled file, by its path relative to the root */
+  private final Map<String, Integer> ids;
+
+  /** the path relative to the root of each journaled file, by id */
+  private final List<String> paths;
+
+  /** the positions of the entries of each journaled file, by id */
+  private final List<long[]> positions;
+
+  /** the number of entries of each journaled file, by id */
+  private final List<Integer> counts;
+
+  /** when the entries in each segment were logged, by segment number */
+  private final List<SparseTimeIndex> timeIndexes;
+
+  /** the number of the segment being appended to */
+  private int segment;
+
+  /** the size of the segment being appended to */
+  private long segmentSize;
+
+  /**
+   * Construct a Journal and index the segments already under the root.
+   *
+   * @param root the directory the journaled files are under
+   * @throws IOException if the segments can't be read
+   */
+  Journal(File root) throws IOException {
+    this.root = root.getAbsoluteFile();
+    directory = new File(this.root, DIRECTORY);
+    ids = new HashMap<>();
+    paths = new ArrayList<>();
+    positions = new ArrayList<>();
+    counts = new ArrayList<>();
+    timeIndexes = new ArrayList<>();
+    load();
+  }
+
+  /**
+   * Returns the journal of the given root, opening it if it isn't open yet.
+   *
+   * @param root the directory the journaled files are under
+   * @return Journal
+   * @throws IOException if the segments can't be read
+   */
+  public static Journal forRoot(File root) throws IOException {
+    File key = root.getCanonicalFile();
+    synchronized (journals) {
+      Journal journal = journals.get(key);
+      if (journal == null) {
+        journal = new Journal(root);
+        journals.put(key, journal);
+      }
+      return journal;
+    }
+  }
+
+  /**
+   * Returns the directory the journaled files are under.
+   *
+   * @return File
+   */
+  public File getRoot() {
+    return root;
+  }
+
+  /**
+   * Returns whether a file has any journaled entries.
+   *
+   * @param file the journaled file
+   * @return boolean
+   */
+  public synchronized boolean contains(File file) {
+    Integer id = ids.get(relativize(file));
+    return id != null && counts.get(id) > 0;
+  }
+
+  /**
+   * Appends an entry for a file, and records its new path if it was renamed.
+   *
+   * @param file the path of the file the entry is for
+   * @param first the first entry, such as the old name
+   * @param second the second entry, such as the new name
+   * @param time when the entry was logged, in milliseconds since the epoch
+   * @param newFile the new path of the file, or null if it keeps its path
+   * @throws IOException if the journal can't be written
+   */
+  public synchronized void append(File file, String first, String second, long time, File newFile)
+      throws IOException {
+    int id = getId(file);
+    byte[] record = entryRecord(id, first, second, time);
+    addEntry(id, write(record), time, record.length);
+    if (newFile != null) {
+      move(id, newFile);
+    }
+  }
+
+  /**
+   * Records that a file was moved or renamed without a log entry.
+   *
+   * @param file the old path of the file
+   * @param newFile the new path of the file
+   * @throws IOException if the journal can't be written
+   */
+  public synchronized void move(File file, File newFile) throws IOException {
+    Integer id = ids.get(relativize(file));
+    if (id != null) {
+      move(id, newFile);
+    }
+  }
+
+  /**
+   * Returns the entries of a file, oldest first.
+   *
+   * @param file the journaled file
+   * @return a LogEntry[] of the entries, empty if the file has none
+   * @throws IOException if the journal can't be read
+   */
+  public synchronized LogEntry[] getEntries(File file) throws IOException {
+    Integer id = ids.get(relativize(file));
+    if (id == null) {
+      return new LogEntry[0];
+    }
+    long[] filePositions = positions.get(id);
+    LogEntry[] ret = new LogEntry[counts.get(id)];
+    RandomAccessFile in = null;
+    int inSegment = -1;
+    try {
+      for (int i = 0; i < ret.length; i++) {
+        int entrySegment = (int) (filePositions[i] >>> 32);
+        if (entrySegment != inSegment) {
+          if (in != null) {
+            in.close();
+          }
+          in = new RandomAccessFile(getSegment(entrySegment), "r");
+          inSegment = entrySegment;
+        }
+        ret[i] = readEntry(in, filePositions[i] & 0xffffffffL);
+      }
+    } finally {
+      if (in != null) {
+        in.close();
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Returns the latest entry of a file, reading only that entry.
+   *
+   * @param file the journaled file
+   * @return LogEntry, or null if the file has no entries
+   * @throws IOException if the journal can't be read
+   */
+  public synchronized LogEntry getLastEntry(File file) throws IOException {
+    Integer id = ids.get(relativize(file));
+    if (id == null || counts.get(id) == 0) {
+      return null;
+    }
+    long position = positions.get(id)[counts.get(id) - 1];
+    try (RandomAccessFile in = new RandomAccessFile(getSegment((int) (position >>> 32)), "r")) {
+      return readEntry(in, position & 0xffffffffL);
+    }
+  }
+
+  /**
+   * Returns the entries of every journaled file logged in a time range. Only the parts of the
+   * segments whose SparseTimeIndex blocks overlap the range are read, and they are read as the
+   * stream is consumed. The entries are in the order they were journaled, with each file given by
+   * its latest path.
+   *
+   * @param from the earliest time, inclusive, in milliseconds since the epoch
+   * @param to the latest time, exclusive, in milliseconds since the epoch
+   * @return a Stream of the entries, which throws UncheckedIOException if a segment can't be read
+   */
+  public synchronized Stream<HistoryEntry> getEntriesBetween(long from, long to) {
+    String[] currentPaths = paths.toArray(new String[paths.size()]);
+    List<long[]> parts = new ArrayList<>();
+    for (int i = 0; i < timeIndexes.size(); i++) {
+      for (long[] range : timeIndexes.get(i).getRanges(from, to)) {
+        parts.add(new long[] {i, range[0], range[1]});
+      }
+    }
+    return parts.stream().flatMap(part -> readEntriesBetween(part, from, to, currentPaths));
+  }
+
+  /**
+   * Reads the entries logged in a time range from part of a segment. Segments are only appended
+   * to, so this doesn't need the lock.
+   *
+   * @param part the segment, and the start and end of the part of it
+   * @param from the earliest time, inclusive
+   * @param to the latest time, exclusive
+   * @param currentPaths the path of each journaled file, by id
+   * @return a Stream of the entries in the range
+   */
+  private Stream<HistoryEntry> readEntriesBetween(
+      long[] part, long from, long to, String[] currentPaths) {
+    List<HistoryEntry> ret = new ArrayList<>();
+    byte[] bytes = new byte[(int) (part[2] - part[1])];
+    try {
+      try (RandomAccessFile in = new RandomAccessFile(getSegment((int) part[0]), "r")) {
+        in.seek(part[1]);
+        in.readFully(bytes);
+      }
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+      while (in.available() > 0) {
+        int length = in.readInt();
+        byte type = in.readByte();
+        int id = in.readInt();
+        if (type != ENTRY) {
+          in.skipBytes(length - 5);
+          continue;
+        }
+        long time = in.readLong();
+        String first = in.readUTF();
+        String second = in.readUTF();
+        if (time >= from && time < to && id < currentPaths.length && currentPaths[id] != null) {
+          ret.add(new HistoryEntry(new File(root, currentPaths[id]), first, second, time));
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return ret.stream();
+  }
+
+  /**
+   * Reads an ENTRY record.
+   *
+   * @param in the segment
+   * @param offset where the record starts in the segment
+   * @return LogEntry
+   * @throws IOException if the record can't be read
+   */
+  private static LogEntry readEntry(RandomAccessFile in, long offset) throws IOException {
+    in.seek(offset);
+    in.readInt();
+    in.readByte();
+    in.readInt();
+    long time = in.readLong();
+    String first = in.readUTF();
+    return new LogEntry(first, in.readUTF(), time);
+  }
+
+  /**
+   * Imports the entries of a file logged somewhere else, such as in a hidden log file.
+   *
+   * @param file the file the entries are for
+   * @param entries the entries, oldest first
+   * @throws IOException if the journal can't be written
+   */
+  public synchronized void importEntries(File file, List<LogEntry> entries) throws IOException {
+    int id = getId(file);
+    for (LogEntry entry : entries) {
+      byte[] record = entryRecord(id, entry.getFirst(), entry.getSecond(), entry.getTime());
+      addEntry(id, write(record), entry.getTime(), record.length);
+    }
+  }
+
+  /**
+   * Returns the id of a file, giving it a new one and journaling its path if it has none.
+   *
+   * @param file the file
+   * @return int
+   * @throws IOException if the journal can't be written
+   */
+  private int getId(File file) throws IOException {
+    String path = relativize(file);
+    Integer id = ids.get(path);
+    if (id == null) {
+      id = paths.size();
+      write(pathRecord(id, path));
+      setPath(id, path);
+    }
+    return id;
+  }
+
+  /**
+   * Journals and records the new path of a file.
+   *
+   * @param id the id of the file
+   * @param newFile the new path
+   * @throws IOException if the journal can't be written
+   */
+  private void move(int id, File newFile) throws IOException {
+    String path = relativize(newFile);
+    write(pathRecord(id, path));
+    setPath(id, path);
+  }
+
+  /**
+   * Records the path of a file in the index.
+   *
+   * @param id the id of the file
+   * @param path the path relative to the root
+   */
+  private void setPath(int id, String path) {
+    while (paths.size() <= id) {
+      paths.add(null);
+      positions.add(new long[0]);
+      counts.add(0);
+    }
+    String oldPath = paths.get(id);
+    if (oldPath != null && Integer.valueOf(id).equals(ids.get(oldPath))) {
+      ids.remove(oldPath);
+    }
+    paths.set(id, path);
+    ids.put(path, id);
+  }
+
+  /**
+   * Records the position of an entry of a file in the index.
+   *
+   * @param id the id of the file
+   * @param position the segment and offset of the entry
+   */
+  private void addPosition(int id, long position) {
+    long[] filePositions = positions.get(id);
+    int count = counts.get(id);
+    if (count == filePositions.length) {
+      filePositions = Arrays.copyOf(filePositions, Math.max(4, 2 * count));
+      positions.set(id, filePositions);
+    }
+    filePositions[count] = position;
+    counts.set(id, count + 1);
+  }
+
+  /**
+   * Records the position of an entry of a file in the index, and when it was logged in the
+   * SparseTimeIndex of its segment.
+   *
+   * @param id the id of the file
+   * @param position the segment and offset of the entry
+   * @param time when the entry was logged
+   * @param length the length of the entry's record
+   */
+  private void addEntry(int id, long position, long time, int length) {
+    addPosition(id, position);
+    int entrySegment = (int) (position >>> 32);
+    while (timeIndexes.size() <= entrySegment) {
+      timeIndexes.add(new SparseTimeIndex());
+    }
+    long offset = position & 0xffffffffL;
+    timeIndexes.get(entrySegment).add(time, offset, offset + length);
+  }
+
+  /**
+   * Appends a record to the current segment, starting a new segment if it is full.
+   *
+   * @param record the encoded record
+   * @return the segment and offset of the record
+   * @throws IOException if the segment can't be written
+   */
+  private long write(byte[] record) throws IOException {
+    if (segmentSize > 0 && segmentSize + record.length > SEGMENT_SIZE) {
+      LogWriter.getInstance().close(getSegment(segment));
+      segment++;
+      segmentSize = 0;
+    }
+    if (!directory.exists() && !directory.mkdirs()) {
+      throw new IOException("Unable to create " + directory);
+    }
+    long position = ((long) segment << 32) | segmentSize;
+    try {
+      LogWriter.getInstance().append(getSegment(segment), record);
+    } catch (IOException e) {
+      truncateSegment();
+      throw e;
+    }
+    segmentSize += record.length;
+    return position;
+  }
+
+  /**
+   * Truncates whatever part of a record a failed append left at the end of the current segment,
+   * so the next record is written where segmentSize says. If the segment can't be truncated,
+   * segmentSize is set to the segment's length instead, so later positions are still right.
+   */
+  private void truncateSegment() {
+    File segmentFile = getSegment(segment);
+    LogWriter.getInstance().close(segmentFile);
+    if (segmentFile.length() <= segmentSize) {
+      return;
+    }
+    try (FileChannel channel =
+        FileChannel.open(segmentFile.toPath(), StandardOpenOption.WRITE)) {
+      channel.truncate(segmentSize);
+    } catch (IOException e) {
+      e.printStackTrace();
+      segmentSize = segmentFile.length();
+    }
+  }
+
+  /**
+   * Reads every segment, indexing the paths and entry positions of the files. A record cut off at
+   * the end of the last segment, for example by a crash, is truncated away.
+   *
+   * @throws IOException if a segment can't be read
+   */
+  private void load() throws IOException {
+    while (getSegment(segment + 1).exists()) {
+      segment++;
+    }
+    for (int i = 0; i <= segment; i++) {
+      File segmentFile = getSegment(i);
+      if (!segmentFile.exists()) {
+        continue;
+      }
+      long offset = 0;
+      try (DataInputStream in =
+          new DataInputStream(new BufferedInputStream(new FileInputStream(segmentFile)))) {
+        while (true) {
+          int length;
+          try {
+            length = in.readInt();
+          } catch (EOFException e) {
+            break;
+          }
+          byte[] body = new byte[length];
+          in.readFully(body);
+          readRecord(body, ((long) i << 32) | offset);
+          offset += 4 + length;
+        }
+      } catch (EOFException e) {
+        // The last record was cut off.
+        try (FileChannel channel =
+            FileChannel.open(segmentFile.toPath(), StandardOpenOption.WRITE)) {
+          channel.truncate(offset);
+        }
+      }
+      if (i == segment) {
+        segmentSize = offset;
+      }
+    }
+  }
+
+  /**
+   * Indexes one record read from a segment.
+   *
+   * @param body the record without its length
+   * @param position the segment and offset of the record
+   * @throws IOException if the record is malformed
+   */
+  private void readRecord(byte[] body, long position) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+    byte type = in.readByte();
+    int id = in.readInt();
+    if (type == PATH) {
+      setPath(id, in.readUTF());
+    } else if (type == ENTRY && id < paths.size()) {
+      addEntry(id, position, in.readLong(), 4 + body.length);
+    }
+  }
+
+  /**
+   * Encodes a record of a log entry.
+   *
+   * @param id the id of the file
+   * @param first the first entry
+   * @param second the second entry
+   * @param time when the entry was logged
+   * @return byte[] of the record, with its length first
+   * @throws IOException if the record can't be encoded
+   */
+  private static byte[] entryRecord(int id, String first, String second, long time)
+      throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(0);
+    out.writeByte(ENTRY);
+    out.writeInt(id);
+    out.writeLong(time);
+    out.writeUTF(first);
+    out.writeUTF(second);
+    return withLength(bytes.toByteArray());
+  }
+
+  /**
+   * Encodes a record of the path of a file.
+   *
+   * @param id the id of the file
+   * @param path the path relative to the root
+   * @return byte[] of the record, with its length first
+   * @throws IOException if the record can't be encoded
+   */
+  private static byte[] pathRecord(int id, String path) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(0);
+    out.writeByte(PATH);
+    out.writeInt(id);
+    out.writeUTF(path);
+    return withLength(bytes.toByteArray());
+  }
+
+  /**
+   * Fills in the length at the start of an encoded record.
+   *
+   * @param record the record, starting with four bytes for its length
+   * @return the record
+   */
+  private static byte[] withLength(byte[] record) {
+    int length = record.length - 4;
+    record[0] = (byte) (length >>> 24);
+    record[1] = (byte) (length >>> 16);
+    record[2] = (byte) (length >>> 8);
+    record[3] = (byte) length;
+    return record;
+  }
+
+  /**
+   * Returns the file of a segment.
+   *
+   * @param number the number of the segment
+   * @return File
+   */
+  private File getSegment(int number) {
+    return new File(directory, String.format("%08d%s", number, SEGMENT_SUFFIX));
+  }
+
+  /**
+   * Returns the path of a file relative to the root, with / between names.
+   *
+   * @param file the file
+   * @return String
+   */
+  private String relativize(File file) {
+    return root.toPath()
+        .relativize(file.getAbsoluteFile().toPath())
+        .normalize()
+        .toString()
+        .replace(File.separatorChar, '/');
+  }
+}
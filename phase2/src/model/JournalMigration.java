@@ -0,0 +1,145 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Imports the hidden ".name.log" files under a root into the root's Journal. */
+public class JournalMigration {
+
+  /** the prefix of the hidden log files */
+  private static final String LOG_FILE_PREFIX = ".";
+
+  /** the suffix of the hidden log files */
+  private static final String LOG_FILE_SUFFIX = ".log";
+
+  /** Not to be constructed. */
+  private JournalMigration() {}
+
+  /**
+   * Imports every hidden log file under a root into its journal, deleting each log file once its
+   * entries are journaled. Files that already have journaled entries are skipped, so running the
+   * migration twice doesn't import anything twice.
+   *
+   * @param root the root directory
+   * @return the number of log files imported
+   * @throws IOException if the tree can't be walked or the journal can't be written
+   */
+  public static int migrate(File root) throws IOException {
+    Journal journal = Journal.forRoot(root);
+    List<Path> logFiles = findLogFiles(root);
+    int imported = 0;
+    for (Path logFile : logFiles) {
+      if (importLog(journal, getLoggedFile(logFile), logFile.toFile())) {
+        imported++;
+      }
+    }
+    return imported;
+  }
+
+  /**
+   * Finds every hidden log file under a root, skipping the root's journal.
+   *
+   * @param root the root directory
+   * @return a List of the paths of the log files
+   * @throws IOException if the tree can't be walked
+   */
+  static List<Path> findLogFiles(File root) throws IOException {
+    List<Path> logFiles = new ArrayList<>();
+    Files.walkFileTree(
+        root.toPath(),
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            return dir.getFileName() != null
+                    && dir.getFileName().toString().equals(Journal.DIRECTORY)
+                ? FileVisitResult.SKIP_SUBTREE
+                : FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            String name = file.getFileName().toString();
+            if (attrs.isRegularFile()
+                && name.startsWith(LOG_FILE_PREFIX)
+                && name.endsWith(LOG_FILE_SUFFIX)
+                && name.length() > LOG_FILE_PREFIX.length() + LOG_FILE_SUFFIX.length()) {
+              logFiles.add(file);
+            }
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFileFailed(Path file, IOException exc) {
+            return FileVisitResult.CONTINUE;
+          }
+        });
+    return logFiles;
+  }
+
+  /**
+   * Returns the file a hidden log file is for.
+   *
+   * @param logFile the hidden log file
+   * @return File
+   */
+  static File getLoggedFile(Path logFile) {
+    String name = logFile.getFileName().toString();
+    return new File(
+        logFile.getParent().toFile(),
+        name.substring(LOG_FILE_PREFIX.length(), name.length() - LOG_FILE_SUFFIX.length()));
+  }
+
+  /**
+   * Imports one hidden log file into a journal and deletes it, unless the file it is for already
+   * has journaled entries.
+   *
+   * @param journal the journal
+   * @param file the file the log is for
+   * @param logFile the hidden log file
+   * @return whether the log file was imported
+   * @throws IOException if the log file can't be read or the journal can't be written
+   */
+  static boolean importLog(Journal journal, File file, File logFile) throws IOException {
+    if (journal.contains(file) || !logFile.exists()) {
+      return false;
+    }
+    LogWriter.getInstance().close(logFile);
+    List<LogEntry> entries = new ArrayList<>();
+    for (String line : Files.readAllLines(logFile.toPath(), Charset.defaultCharset())) {
+      LogEntry entry = LogEntryFormat.parse(line);
+      if (entry != null) {
+        entries.add(entry);
+      }
+    }
+    journal.importEntries(file, entries);
+    // The entries are journaled now, so a log file that can't be deleted is only left over.
+    try {
+      Files.delete(logFile.toPath());
+      TagHistory.logFileChanged(logFile, null);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    return true;
+  }
+
+  /**
+   * Imports the hidden log files under the directories given as arguments.
+   *
+   * @param args the root directories
+   * @throws IOException if a root can't be migrated
+   */
+  public static void main(String[] args) throws IOException {
+    for (String root : args) {
+      System.out.println(root + ": imported " + migrate(new File(root)) + " log files");
+    }
+    LogWriter.getInstance().closeAll();
+  }
+}
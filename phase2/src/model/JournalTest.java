@@ -0,0 +1,79 @@
+package model;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JournalTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private Journal journal;
+  private GeneralFile generalFile;
+
+  @Before
+  public void setUp() throws Exception {
+    journal = Journal.forRoot(folder.getRoot());
+    generalFile = new GeneralFile(folder.newFile("file.txt"));
+    generalFile.setJournal(journal);
+  }
+
+  @Test
+  public void renamesAreJournaledInsteadOfLogged() throws Exception {
+    generalFile.addTag(new String[] {"a"});
+    generalFile.addTag(new String[] {"b"});
+    generalFile.removeTag(new String[] {"a"});
+    assertFalse(new File(folder.getRoot(), ".file @b.txt.log").exists());
+    assertEquals(3, generalFile.getLog().length);
+    assertTrue(generalFile.getLog()[1].startsWith("file @a / file @a @b / "));
+    Assert.assertArrayEquals(new String[] {"a"}, generalFile.getPreviousTags());
+  }
+
+  @Test
+  public void reopenedJournalHasTheHistory() throws Exception {
+    generalFile.addTag(new String[] {"a"});
+    File aFolder = folder.newFolder("aFolder");
+    assertTrue(generalFile.moveFile(aFolder.getPath()));
+    generalFile.addTag(new String[] {"b"});
+    Journal reopened = new Journal(folder.getRoot());
+    LogEntry[] entries = reopened.getEntries(generalFile.getFile());
+    assertEquals(2, entries.length);
+    assertEquals("file", entries[0].getFirst());
+    assertEquals("file @a @b", entries[1].getSecond());
+    assertFalse(reopened.contains(new File(folder.getRoot(), "file @a.txt")));
+  }
+
+  @Test
+  public void migrationImportsHiddenLogs() throws Exception {
+    GeneralFile logged = new GeneralFile(folder.newFile("logged.txt"));
+    logged.addTag(new String[] {"a"});
+    logged.addTag(new String[] {"b"});
+    String[] lines = logged.getLog();
+    File logFile = new File(folder.getRoot(), ".logged @a @b.txt.log");
+    assertTrue(logFile.exists());
+    assertEquals(1, JournalMigration.migrate(folder.getRoot()));
+    assertFalse(logFile.exists());
+    assertEquals(0, JournalMigration.migrate(folder.getRoot()));
+    GeneralFile journaled = new GeneralFile(logged.getFile());
+    journaled.setJournal(journal);
+    assertEquals(Arrays.asList(lines), Arrays.asList(journaled.getLog()));
+  }
+
+  @Test
+  public void hiddenLogIsImportedOnFirstJournaledRename() throws Exception {
+    GeneralFile logged = new GeneralFile(folder.newFile("logged.txt"));
+    logged.addTag(new String[] {"a"});
+    logged.setJournal(journal);
+    logged.addTag(new String[] {"b"});
+    assertFalse(new File(folder.getRoot(), ".logged @a.txt.log").exists());
+    assertEquals(2, logged.getLog().length);
+  }
+}
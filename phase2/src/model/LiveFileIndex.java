@@ -0,0 +1,336 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Keeps the set of files under a root up to date by applying the events of a WatchService, so that
+ * a refresh only costs as much as the changes made since the last one. The WatchService can be
+ * slow to report changes, so the renames and moves the model makes itself are also applied as soon
+ * as they are published on the TagEventBus. The index can be built from a ScanSnapshot, so only
+ * the directories that changed since the snapshot was saved are listed when it's created.
+ */
+class LiveFileIndex implements TagEventListener {
+
+  /** the root of the watched tree */
+  private final Path root;
+
+  /** the WatchService every directory under root is registered with */
+  private final WatchService watchService;
+
+  /** the directory each WatchKey was registered for */
+  private final Map<WatchKey, Path> directories;
+
+  /** the WatchKey of each registered directory, or null if it was registered after closing */
+  private final Map<Path, WatchKey> keys;
+
+  /** the files directly inside each registered directory */
+  private final Map<Path, Set<Path>> filesByDirectory;
+
+  /**
+   * Construct a new LiveFileIndex, registering every directory under root with a new WatchService
+   * and indexing the files in them.
+   *
+   * @param root the directory to watch
+   * @throws IOException if the WatchService can't be created or root can't be registered
+   */
+  LiveFileIndex(File root) throws IOException {
+    this(root, null);
+  }
+
+  /**
+   * Construct a new LiveFileIndex, registering every directory under root with a new WatchService
+   * and taking the files in the directories that didn't change from a snapshot. Each directory is
+   * registered before the snapshot checks it, so a change made after it was checked is reported.
+   *
+   * @param root the directory to watch
+   * @param snapshot the snapshot of root, which is updated, or null to list every directory
+   * @throws IOException if the WatchService can't be created or root can't be registered
+   */
+  LiveFileIndex(File root, ScanSnapshot snapshot) throws IOException {
+    this.root = root.toPath();
+    watchService = this.root.getFileSystem().newWatchService();
+    directories = new HashMap<>();
+    keys = new HashMap<>();
+    filesByDirectory = new HashMap<>();
+    if (snapshot == null) {
+      registerTree(this.root);
+      return;
+    }
+    List<File> files =
+        snapshot.walk(name -> true, true, directory -> register(toIndexedPath(directory)));
+    for (File file : files) {
+      Path path = toIndexedPath(file);
+      Set<Path> siblings = filesByDirectory.get(path.getParent());
+      if (siblings != null) {
+        siblings.add(path);
+      }
+    }
+  }
+
+  /**
+   * Returns the path a file under the root is indexed under, which is relative if root is.
+   *
+   * @param file the absolute path of the file
+   * @return Path
+   */
+  private Path toIndexedPath(File file) {
+    return root.resolve(root.toAbsolutePath().relativize(file.toPath()));
+  }
+
+  /**
+   * Returns the indexed files after applying all the pending changes.
+   *
+   * @param recursive true for all the files under root, false for just the ones directly in it
+   * @return a List of the indexed files
+   */
+  synchronized List<File> getFiles(boolean recursive) {
+    refresh();
+    List<File> files = new ArrayList<>();
+    if (recursive) {
+      for (Set<Path> directoryFiles : filesByDirectory.values()) {
+        for (Path file : directoryFiles) {
+          files.add(file.toFile());
+        }
+      }
+    } else if (filesByDirectory.containsKey(root)) {
+      for (Path file : filesByDirectory.get(root)) {
+        files.add(file.toFile());
+      }
+    }
+    return files;
+  }
+
+  /** Applies all the events the WatchService has queued since the last refresh. */
+  synchronized void refresh() {
+    WatchKey key;
+    try {
+      key = watchService.poll();
+    } catch (ClosedWatchServiceException e) {
+      // Nothing is being watched anymore, so only the model's own changes are applied.
+      return;
+    }
+    while (key != null) {
+      Path directory = directories.get(key);
+      if (directory != null) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+          if (event.kind() == OVERFLOW) {
+            // Events were lost, so the directory has to be listed again.
+            rescanDirectory(directory);
+          } else {
+            Path child = directory.resolve((Path) event.context());
+            if (event.kind() == ENTRY_CREATE) {
+              addEntry(child);
+            } else if (event.kind() == ENTRY_DELETE) {
+              removeEntry(child);
+            }
+          }
+        }
+        if (!key.reset()) {
+          // The directory is no longer accessible, most likely because it was deleted.
+          removeEntry(directory);
+        }
+      }
+      key = watchService.poll();
+    }
+  }
+
+  /**
+   * Lists the directories files were renamed or moved in and out of again, so the model's own
+   * changes are indexed without waiting for the WatchService.
+   *
+   * @param events the events from the TagEventBus
+   */
+  @Override
+  public synchronized void onEvents(List<TagEvent> events) {
+    Set<Path> changed = new LinkedHashSet<>();
+    for (TagEvent event : events) {
+      if (!event.isFileEvent()) {
+        continue;
+      }
+      changed.add(event.getFile().getFile().getAbsoluteFile().getParentFile().toPath());
+      if (event.getType() == TagEvent.Type.FILE_MOVED) {
+        changed.add(Paths.get(event.getOldValue()).toAbsolutePath());
+      }
+    }
+    Path absoluteRoot = root.toAbsolutePath();
+    for (Path directory : changed) {
+      if (directory.startsWith(absoluteRoot)) {
+        // Index the directory under the same path the walk registered it with.
+        Path registered = root.resolve(absoluteRoot.relativize(directory));
+        if (keys.containsKey(registered)) {
+          rescanDirectory(registered);
+        } else if (Files.isDirectory(registered)) {
+          // A file was moved into a directory the WatchService hasn't reported yet.
+          Path top = registered;
+          while (top.getParent() != null && !keys.containsKey(top.getParent())) {
+            top = top.getParent();
+          }
+          registerTree(top);
+        }
+      }
+    }
+  }
+
+  /** Stops watching the tree. */
+  void close() {
+    try {
+      watchService.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Indexes a newly created entry, registering it (and everything under it) if it's a directory.
+   *
+   * @param entry the new entry
+   */
+  private void addEntry(Path entry) {
+    if (Files.isDirectory(entry)) {
+      if (!keys.containsKey(entry)) {
+        registerTree(entry);
+      }
+    } else if (Files.isRegularFile(entry)) {
+      Set<Path> siblings = filesByDirectory.get(entry.getParent());
+      if (siblings != null) {
+        siblings.add(entry);
+      }
+    }
+  }
+
+  /**
+   * Removes a deleted entry from the index, along with everything under it if it was a directory.
+   *
+   * @param entry the deleted entry
+   */
+  private void removeEntry(Path entry) {
+    Set<Path> siblings = filesByDirectory.get(entry.getParent());
+    if (siblings != null && siblings.remove(entry)) {
+      return;
+    }
+    Iterator<Map.Entry<Path, WatchKey>> iterator = keys.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Path, WatchKey> registered = iterator.next();
+      if (registered.getKey().startsWith(entry)) {
+        if (registered.getValue() != null) {
+          registered.getValue().cancel();
+          directories.remove(registered.getValue());
+        }
+        filesByDirectory.remove(registered.getKey());
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Lists a directory again after its events were lost, registering new subdirectories and dropping
+   * removed ones.
+   *
+   * @param directory the directory to list again
+   */
+  private void rescanDirectory(Path directory) {
+    Set<Path> files = new HashSet<>();
+    Set<Path> subdirectories = new HashSet<>();
+    try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+      for (Path child : children) {
+        if (Files.isDirectory(child)) {
+          subdirectories.add(child);
+          if (!keys.containsKey(child)) {
+            registerTree(child);
+          }
+        } else if (Files.isRegularFile(child)) {
+          files.add(child);
+        }
+      }
+    } catch (IOException e) {
+      removeEntry(directory);
+      return;
+    }
+    filesByDirectory.put(directory, files);
+    for (Path registered : new ArrayList<>(keys.keySet())) {
+      if (directory.equals(registered.getParent()) && !subdirectories.contains(registered)) {
+        removeEntry(registered);
+      }
+    }
+  }
+
+  /**
+   * Registers a directory with the WatchService and starts indexing it, with no files yet.
+   *
+   * @param directory the directory to register
+   * @return whether the directory could be registered
+   */
+  private boolean register(Path directory) {
+    WatchKey key;
+    try {
+      key = directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE);
+      directories.put(key, directory);
+    } catch (IOException e) {
+      return false;
+    } catch (ClosedWatchServiceException e) {
+      // The index was closed, so the directory is indexed without being watched.
+      key = null;
+    }
+    keys.put(directory, key);
+    filesByDirectory.put(directory, new HashSet<>());
+    return true;
+  }
+
+  /**
+   * Registers every directory under start with the WatchService and indexes their files.
+   *
+   * @param start the directory to register
+   */
+  private void registerTree(Path start) {
+    try {
+      Files.walkFileTree(
+          start,
+          new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+              return register(dir) ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+              Set<Path> siblings = filesByDirectory.get(file.getParent());
+              if (attrs.isRegularFile() && siblings != null) {
+                siblings.add(file);
+              }
+              return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+              return FileVisitResult.CONTINUE;
+            }
+          });
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package model;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LiveFileIndexTest {
+  // How long the WatchService is given to report changes made outside the model, in ms.
+  private static final long WATCH_TIMEOUT = 10000;
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private LiveFileIndex liveFileIndex;
+  private File subFolder;
+  private GeneralFile generalFile;
+
+  @Before
+  public void setUp() throws Exception {
+    generalFile = new GeneralFile(folder.newFile("file.txt"));
+    subFolder = folder.newFolder("sub");
+    liveFileIndex = new LiveFileIndex(folder.getRoot());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    liveFileIndex.close();
+  }
+
+  private Set<File> indexedFiles(boolean recursive) {
+    Set<File> ret = new HashSet<>();
+    for (File file : liveFileIndex.getFiles(recursive)) {
+      // Leave out the hidden log files.
+      if (!file.getName().startsWith(".")) {
+        ret.add(file);
+      }
+    }
+    return ret;
+  }
+
+  /** Stops watching, so only the events given to the index can change it. */
+  private void stopWatching() {
+    liveFileIndex.close();
+  }
+
+  /** Waits, for at most WATCH_TIMEOUT, until the index has exactly the expected files. */
+  private void awaitIndexed(Set<File> expected) throws Exception {
+    long deadline = System.currentTimeMillis() + WATCH_TIMEOUT;
+    while (!expected.equals(indexedFiles(true)) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(20);
+    }
+    assertEquals(expected, indexedFiles(true));
+  }
+
+  @Test
+  public void filesChangedOutsideTheModelAreIndexed() throws Exception {
+    File created = new File(subFolder, "created.txt");
+    assertTrue(created.createNewFile());
+    assertTrue(generalFile.getFile().delete());
+    awaitIndexed(new HashSet<>(Arrays.asList(created)));
+    File newFolder = new File(folder.getRoot(), "new");
+    assertTrue(newFolder.mkdir());
+    File nested = new File(newFolder, "nested.txt");
+    assertTrue(nested.createNewFile());
+    awaitIndexed(new HashSet<>(Arrays.asList(created, nested)));
+  }
+
+  @Test
+  public void burstsOfChangesAreIndexed() throws Exception {
+    // More events than a WatchKey queues, so the directory is usually listed again on OVERFLOW.
+    Set<File> expected = new HashSet<>();
+    expected.add(generalFile.getFile());
+    for (int i = 0; i < 1000; i++) {
+      File file = new File(subFolder, "file" + i + ".txt");
+      assertTrue(file.createNewFile());
+      expected.add(file);
+    }
+    awaitIndexed(expected);
+  }
+
+  @Test
+  public void unchangedDirectoriesAreTakenFromTheSnapshot() throws Exception {
+    liveFileIndex.close();
+    File snapshotFile = new File(folder.getRoot(), ".root.snapshot");
+    long past = System.currentTimeMillis() - 60000;
+    for (File directory : folder.getRoot().listFiles(File::isDirectory)) {
+      assertTrue(directory.setLastModified(past));
+    }
+    assertTrue(folder.getRoot().setLastModified(past));
+    ScanSnapshot scanSnapshot = new ScanSnapshot(folder.getRoot(), snapshotFile);
+    scanSnapshot.walk(name -> true, true);
+    scanSnapshot.save();
+    // Slipped in without changing the directory's modification time, so only a listing finds it.
+    assertTrue(new File(subFolder, "unlisted.txt").createNewFile());
+    assertTrue(subFolder.setLastModified(past));
+
+    liveFileIndex =
+        new LiveFileIndex(folder.getRoot(), new ScanSnapshot(folder.getRoot(), snapshotFile));
+    assertEquals(new HashSet<>(Arrays.asList(generalFile.getFile())), indexedFiles(true));
+    File created = new File(subFolder, "created.txt");
+    assertTrue(created.createNewFile());
+    awaitIndexed(new HashSet<>(Arrays.asList(generalFile.getFile(), created)));
+  }
+
+  @Test
+  public void renamesAreIndexedFromTheirEvents() throws Exception {
+    stopWatching();
+    generalFile.rename("renamed");
+    liveFileIndex.onEvents(Arrays.asList(TagEvent.fileRenamed(generalFile, "file.txt")));
+    assertEquals(
+        new HashSet<>(Arrays.asList(generalFile.getFile())),
+        indexedFiles(true));
+  }
+
+  @Test
+  public void movesAreIndexedFromTheirEvents() throws Exception {
+    stopWatching();
+    String oldDirectory = generalFile.getFile().getParent();
+    generalFile.moveFile(subFolder.getPath());
+    liveFileIndex.onEvents(Arrays.asList(TagEvent.fileMoved(generalFile, oldDirectory)));
+    assertEquals(
+        new HashSet<>(Arrays.asList(new File(subFolder, "file.txt"))),
+        indexedFiles(true));
+    assertEquals(new HashSet<File>(), indexedFiles(false));
+  }
+
+  @Test
+  public void movesIntoNewDirectoriesAreIndexedFromTheirEvents() throws Exception {
+    stopWatching();
+    String oldDirectory = generalFile.getFile().getParent();
+    File newFolder = new File(subFolder, "new");
+    assertTrue(newFolder.mkdir());
+    generalFile.moveFile(newFolder.getPath());
+    liveFileIndex.onEvents(Arrays.asList(TagEvent.fileMoved(generalFile, oldDirectory)));
+    assertEquals(new HashSet<>(Arrays.asList(new File(newFolder, "file.txt"))), indexedFiles(true));
+  }
+
+  @Test
+  public void renamesAndMovesTogetherLeaveNoStalePath() throws Exception {
+    stopWatching();
+    String oldDirectory = generalFile.getFile().getParent();
+    generalFile.rename("renamed");
+    generalFile.moveFile(subFolder.getPath());
+    liveFileIndex.onEvents(
+        Arrays.asList(
+            TagEvent.fileRenamed(generalFile, "file.txt"),
+            TagEvent.fileMoved(generalFile, oldDirectory)));
+    assertEquals(
+        new HashSet<>(Arrays.asList(new File(subFolder, "renamed.txt"))),
+        indexedFiles(true));
+  }
+}
@@ -1,45 +1,75 @@
 package model;
 
 import java.io.*;
+import java.nio.charset.Charset;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Calendar;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Predicate;
 
 /** Manages the log file for the target class (ImageFile and TagManager in our model). */
 public class Log {
 
   private static final String LOG_FILE_SUFFIX = ".log";
-  private static final String LOG_FILE_SEPARATOR = " / ";
+  private static final String LOG_FILE_SEPARATOR = LogEntryFormat.SEPARATOR;
   private static final String LOG_FILE_PREFIX = ".";
+  /** how many bytes are read at a time when reading the log backwards */
+  private static final int TAIL_BLOCK_SIZE = 4096;
   /** the log file for the target class. */
   private File log;
 
+  /** the file this log is for */
+  private File file;
+
+  /** the journal entries are kept in instead of the log file, or null to use the log file */
+  private Journal journal;
+
+  /** the index of the lines of the log file as it was last read, or null */
+  private LogReader reader;
+
+  /** the lines of the journal entries as they were last read, or null */
+  private String[] journalLines;
+
   /**
-   * Creates a log file for a file
+   * Creates a log for a file. The log file itself isn't created until the first entry is added,
+   * so files that are only browsed never get one.
    *
    * @param file the physical file this log file is created for.
    */
   public Log(File file) {
+    this.file = file;
     log = new File(file.getParent(), LOG_FILE_PREFIX + file.getName() + LOG_FILE_SUFFIX);
-    if (!log.exists()) {
-      try {
-        log.createNewFile();
-      } catch (IOException e) {
-        e.printStackTrace();
-      }
+  }
+
+  /**
+   * Keeps new entries in a journal instead of the log file. A log file that already has entries is
+   * imported into the journal, and deleted, when the first new entry is added.
+   *
+   * @param journal the journal, or null to go back to the log file
+   */
+  void setJournal(Journal journal) {
+    this.journal = journal;
+    journalLines = null;
+  }
+
+  /**
+   * Creates the log file, hidden on Windows, if it doesn't exist yet.
+   *
+   * @throws IOException if the log file can't be created
+   */
+  private void materialize() throws IOException {
+    if (!log.createNewFile()) {
+      return;
     }
+    TagHistory.logFileChanged(null, log);
     if (System.getProperty("os.name").contains("Windows")) {
       Path logPath =
           FileSystems.getDefault().getPath(log.getParentFile().getAbsolutePath(), log.getName());
-      try {
-        Files.setAttribute(logPath, "dos:hidden", true);
-      } catch (IOException e) {
-        e.printStackTrace();
-      }
+      Files.setAttribute(logPath, "dos:hidden", true);
     }
   }
 
@@ -60,10 +90,26 @@ public class Log {
    * @return Whether this moving the files was successful
    */
   boolean moveFile(String newPath) {
+    File newFile = new File(newPath, file.getName());
     File newLog = new File(newPath, log.getName());
-    //    log = renameFile(newLog);
-    boolean ret = log.renameTo(newLog);
-    assert ret;
+    if (log.exists()) {
+      LogWriter.getInstance().close(log);
+      if (!log.renameTo(newLog)) {
+        // The log stays where it is, with the file it belongs to.
+        return false;
+      }
+      TagHistory.logFileChanged(log, newLog);
+    }
+    if (journal != null && journal.contains(file)) {
+      try {
+        journal.move(file, newFile);
+      } catch (IOException e) {
+        e.printStackTrace();
+        return false;
+      }
+    }
+    file = newFile;
+    reader = null;
     log = newLog;
     return true;
   }
@@ -78,10 +124,14 @@ public class Log {
   private void addEntry(String entry1, String entry2) throws Exception {
     // Add the new line into the now log file.
     try {
-      BufferedWriter writer = new BufferedWriter(new FileWriter(log, true));
-      writer.append(generateLogEntry(entry1, entry2));
-      writer.flush();
-      writer.close();
+      if (journal != null) {
+        journalLines = null;
+        JournalMigration.importLog(journal, file, log);
+        journal.append(file, entry1, entry2, System.currentTimeMillis(), null);
+        return;
+      }
+      materialize();
+      LogWriter.getInstance().append(log, LogEntryFormat.format(entry1, entry2));
     } catch (IOException ex) {
       //      ex.printStackTrace();
       throw new Exception("Unable to write to Log file: " + ex.getMessage());
@@ -89,25 +139,8 @@ public class Log {
   }
 
   /**
-   * Helps generate the Log entry
-   *
-   * @param entry1 the first entry in the log
-   * @param entry2 the second entry in the log
-   * @return returns the format of a row in the log
-   */
-  private String generateLogEntry(String entry1, String entry2) {
-    return String.format(
-        "%s%s%s%s%tD %tT\n",
-        entry1,
-        LOG_FILE_SEPARATOR,
-        entry2,
-        LOG_FILE_SEPARATOR,
-        Calendar.getInstance(),
-        Calendar.getInstance());
-  }
-
-  /**
-   * Record the renaming of the target file in the log file.
+   * Record the renaming of the target file in the log file. If it can't be recorded, the log is
+   * left as it was, under the target file's old name.
    *
    * @param entry1 the last name of the target file
    * @param entry2 the new name of the target file
@@ -115,14 +148,53 @@ public class Log {
    * @return the log file after recording the renaming
    */
   boolean updateLog(String entry1, String entry2, String newLogName) throws Exception {
+    File newFile = new File(file.getParent(), newLogName);
+    if (journal != null) {
+      try {
+        journalLines = null;
+        JournalMigration.importLog(journal, file, log);
+        journal.append(file, entry1, entry2, System.currentTimeMillis(), newFile);
+      } catch (IOException ex) {
+        throw new Exception("Unable to write to Journal: " + ex.getMessage());
+      }
+      file = newFile;
+      log = new File(file.getParent(), LOG_FILE_PREFIX + newLogName + LOG_FILE_SUFFIX);
+      return true;
+    }
     File newLog =
         new File(
             log.getParentFile(),
             String.format("%s%s%s", LOG_FILE_PREFIX, newLogName, LOG_FILE_SUFFIX));
-    boolean ret = log.renameTo(newLog);
-    assert ret;
+    reader = null;
+    boolean renamed = false;
+    if (log.exists()) {
+      LogWriter.getInstance().close(log);
+      if (!log.renameTo(newLog)) {
+        // Later entries keep going to the old log, so none of its history is lost.
+        throw new Exception("Unable to rename Log file " + log + " to " + newLog);
+      }
+      TagHistory.logFileChanged(log, newLog);
+      renamed = true;
+    }
+    File oldFile = file;
+    File oldLog = log;
+    file = newFile;
     log = newLog;
-    addEntry(entry1, entry2);
+    try {
+      addEntry(entry1, entry2);
+    } catch (Exception e) {
+      // Keep the log under the old name, which the target file is renamed back to.
+      if (renamed) {
+        LogWriter.getInstance().close(newLog);
+        if (newLog.renameTo(oldLog)) {
+          TagHistory.logFileChanged(newLog, oldLog);
+        }
+      }
+      file = oldFile;
+      log = oldLog;
+      reader = null;
+      throw e;
+    }
     return true;
   }
 
@@ -146,21 +218,170 @@ public class Log {
    * @return the list of String representations
    */
   String[] getLog() {
-    List<String> logs = new ArrayList<>();
-    BufferedReader reader;
+    if (journal != null && journal.contains(file)) {
+      return getJournalLines().clone();
+    }
+    LogReader logReader = getReader();
+    if (logReader == null) {
+      return new String[0];
+    }
     try {
-      reader = new BufferedReader(new FileReader(log.getPath()));
-      String line = reader.readLine();
-      while (line != null) {
-        logs.add(line);
-        line = reader.readLine();
+      return logReader.readRows();
+    } catch (IOException e) {
+      e.printStackTrace();
+      return new String[0];
+    }
+  }
+
+  /**
+   * Returns the lines of the log as they are now, in the same format as getLog. The log file is
+   * checked for changes once, when this is called, and each line is only read from the log file
+   * when it is asked for, so a long log can be paged through a line at a time.
+   *
+   * @return an unmodifiable List of the lines, whose size doesn't change when the log does
+   */
+  List<String> getRows() {
+    if (journal != null && journal.contains(file)) {
+      return Collections.unmodifiableList(Arrays.asList(getJournalLines()));
+    }
+    LogReader logReader = getReader();
+    return logReader == null ? Collections.emptyList() : logReader.getRows();
+  }
+
+  /**
+   * Returns a reader of the log file as it is now, reusing the last one if the log file was only
+   * appended to since. The reader only keeps where each line starts, not the lines themselves.
+   *
+   * @return LogReader, or null if there is no log file or it can't be read
+   */
+  private synchronized LogReader getReader() {
+    if (!log.exists()) {
+      // Nothing has been logged yet.
+      reader = null;
+      return null;
+    }
+    try {
+      reader = reader == null ? new LogReader(log) : reader.refresh();
+    } catch (IOException e) {
+      e.printStackTrace();
+      reader = null;
+    }
+    return reader;
+  }
+
+  /**
+   * Returns the lines of the journal entries, reading them from the journal only if they were
+   * changed since they were last read.
+   *
+   * @return String[]
+   */
+  private synchronized String[] getJournalLines() {
+    if (journalLines == null) {
+      List<String> logs = new ArrayList<>();
+      try {
+        for (LogEntry entry : journal.getEntries(file)) {
+          logs.add(LogEntryFormat.toLine(entry));
+        }
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+      journalLines = logs.toArray(new String[logs.size()]);
+    }
+    return journalLines;
+  }
+
+  /**
+   * Returns the last line of the log, reading backwards from the end of the log file so only the
+   * last line is read however long the log is.
+   *
+   * @return the last line, or null if the log is empty
+   */
+  String getLastLine() {
+    if (journal != null && journal.contains(file)) {
+      try {
+        LogEntry entry = journal.getLastEntry(file);
+        return entry == null ? null : LogEntryFormat.toLine(entry);
+      } catch (IOException e) {
+        e.printStackTrace();
+        return null;
+      }
+    }
+    List<String> lines = getLinesSince(line -> true);
+    return lines.isEmpty() ? null : lines.get(0);
+  }
+
+  /**
+   * Returns the last lines of the log, from the last line that passes the given test to the end.
+   * The log file is read backwards from the end, so only those lines are read.
+   *
+   * @param isStart the test for the line to start from
+   * @return the lines in the order they were logged, or the whole log if no line passes the test
+   */
+  List<String> getLinesSince(Predicate<String> isStart) {
+    List<String> lines = new ArrayList<>();
+    if (journal != null && journal.contains(file)) {
+      String[] all = getLog();
+      int start = all.length - 1;
+      while (start > 0 && !isStart.test(all[start])) {
+        start--;
+      }
+      lines.addAll(Arrays.asList(all).subList(Math.max(start, 0), all.length));
+      return lines;
+    }
+    if (!log.exists()) {
+      return lines;
+    }
+    try (RandomAccessFile in = new RandomAccessFile(log, "r")) {
+      byte[] block = new byte[TAIL_BLOCK_SIZE];
+      long end = in.length();
+      long[] bounds;
+      while ((bounds = findLineBefore(in, end, block)) != null) {
+        byte[] line = new byte[(int) (bounds[1] - bounds[0])];
+        in.seek(bounds[0]);
+        in.readFully(line);
+        String str = new String(line, Charset.defaultCharset());
+        lines.add(str);
+        if (isStart.test(str)) {
+          break;
+        }
+        end = bounds[0];
       }
-      reader.close();
     } catch (IOException e) {
       e.printStackTrace();
     }
+    Collections.reverse(lines);
+    return lines;
+  }
 
-    return logs.toArray(new String[logs.size()]);
+  /**
+   * Finds the last non-empty line that ends before the given position, reading backwards.
+   *
+   * @param in the log file
+   * @param end the position to search back from
+   * @param block a buffer for the blocks read
+   * @return the start and end of the line, or null if there is no such line
+   * @throws IOException if the log file can't be read
+   */
+  private static long[] findLineBefore(RandomAccessFile in, long end, byte[] block)
+      throws IOException {
+    long lineEnd = -1;
+    long blockEnd = end;
+    while (blockEnd > 0) {
+      long blockStart = Math.max(0, blockEnd - block.length);
+      int length = (int) (blockEnd - blockStart);
+      in.seek(blockStart);
+      in.readFully(block, 0, length);
+      for (int i = length - 1; i >= 0; i--) {
+        boolean newline = block[i] == '\n' || block[i] == '\r';
+        if (lineEnd < 0 && !newline) {
+          lineEnd = blockStart + i + 1;
+        } else if (lineEnd >= 0 && newline) {
+          return new long[] {blockStart + i + 1, lineEnd};
+        }
+      }
+      blockEnd = blockStart;
+    }
+    return lineEnd < 0 ? null : new long[] {0, lineEnd};
   }
 
   /**
@@ -169,16 +390,23 @@ public class Log {
    * @param column the column of data to get, should be a value between 0-2 inclusive.
    */
   String[] getColumn(int column) {
-    List<List<String>> tabledLog = new ArrayList<>();
-    List<String> ret = new ArrayList<>();
-    for (String logEntry : getLog()) {
-      List<String> inner = new ArrayList<>();
-      inner.addAll(Arrays.asList(logEntry.split(LOG_FILE_SEPARATOR)));
-      tabledLog.add(inner);
+    if (journal != null && journal.contains(file)) {
+      List<String> ret = new ArrayList<>();
+      for (String logEntry : getJournalLines()) {
+        ret.add(logEntry.split(LOG_FILE_SEPARATOR)[column]);
+      }
+      return ret.toArray(new String[ret.size()]);
+    }
+    // Only the asked for column of each line is decoded.
+    LogReader logReader = getReader();
+    if (logReader == null) {
+      return new String[0];
     }
-    for (List<String> row : tabledLog) {
-      ret.add(row.get(column));
+    try {
+      return logReader.readColumn(column);
+    } catch (IOException e) {
+      e.printStackTrace();
+      return new String[0];
     }
-    return ret.toArray(new String[ret.size()]);
   }
 }
@@ -0,0 +1,64 @@
+package model;
+
+/** One line of a Log: two entries and when they were logged. */
+public class LogEntry {
+
+  /** the first entry, such as the old name of a file */
+  private final String first;
+
+  /** the second entry, such as the new name of a file */
+  private final String second;
+
+  /** when the line was logged, in milliseconds since the epoch, to the second */
+  private final long time;
+
+  /**
+   * Construct a new LogEntry.
+   *
+   * @param first the first entry
+   * @param second the second entry
+   * @param time when the line was logged, in milliseconds since the epoch
+   */
+  public LogEntry(String first, String second, long time) {
+    this.first = first;
+    this.second = second;
+    this.time = time;
+  }
+
+  /**
+   * Returns the first entry, column 0 of the log.
+   *
+   * @return String
+   */
+  public String getFirst() {
+    return first;
+  }
+
+  /**
+   * Returns the second entry, column 1 of the log.
+   *
+   * @return String
+   */
+  public String getSecond() {
+    return second;
+  }
+
+  /**
+   * Returns when the line was logged.
+   *
+   * @return milliseconds since the epoch
+   */
+  public long getTime() {
+    return time;
+  }
+
+  /**
+   * Generate a string of the entries and the time they were logged.
+   *
+   * @return String
+   */
+  @Override
+  public String toString() {
+    return first + " / " + second + " / " + time;
+  }
+}
@@ -0,0 +1,263 @@
+package model;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+
+/**
+ * Writes and reads log lines of the form "first / second / MM/dd/yy HH:mm:ss". The date of the
+ * current second is encoded once and reused, and entries are encoded straight into a byte[] of
+ * their exact length instead of going through String.format and Calendar.
+ */
+public class LogEntryFormat {
+
+  /** what separates the columns of a line */
+  static final String SEPARATOR = " / ";
+
+  /** the length of an encoded date, "MM/dd/yy HH:mm:ss" */
+  private static final int DATE_LENGTH = 17;
+
+  /** the charset log files are read and written in */
+  private static final Charset CHARSET = Charset.defaultCharset();
+
+  /** whether ASCII characters are encoded as single bytes of the same value by CHARSET */
+  private static final boolean ASCII_COMPATIBLE =
+      Arrays.equals("/ @az09".getBytes(CHARSET), "/ @az09".getBytes(StandardCharsets.US_ASCII));
+
+  /** the bytes of SEPARATOR in CHARSET */
+  private static final byte[] SEPARATOR_BYTES = SEPARATOR.getBytes(CHARSET);
+
+  /** the encoded date of the latest second a line was formatted in */
+  private static volatile Stamp stamp = new Stamp(Long.MIN_VALUE, new byte[DATE_LENGTH]);
+
+  /** Not to be constructed. */
+  private LogEntryFormat() {}
+
+  /**
+   * Returns the bytes of a line logged now.
+   *
+   * @param first the first entry
+   * @param second the second entry
+   * @return byte[] of the line, ending in a newline
+   */
+  static byte[] format(String first, String second) {
+    return format(first, second, System.currentTimeMillis());
+  }
+
+  /**
+   * Returns the bytes of a line logged at the given time.
+   *
+   * @param first the first entry
+   * @param second the second entry
+   * @param time when the line was logged, in milliseconds since the epoch
+   * @return byte[] of the line, ending in a newline
+   */
+  static byte[] format(String first, String second, long time) {
+    // Only entries that aren't ASCII are encoded on their own before being copied in.
+    byte[] firstBytes = isAscii(first) ? null : first.getBytes(CHARSET);
+    byte[] secondBytes = isAscii(second) ? null : second.getBytes(CHARSET);
+    int firstLength = firstBytes == null ? first.length() : firstBytes.length;
+    int secondLength = secondBytes == null ? second.length() : secondBytes.length;
+    byte[] ret =
+        new byte[firstLength + secondLength + 2 * SEPARATOR_BYTES.length + DATE_LENGTH + 1];
+    int end = put(first, firstBytes, ret, 0);
+    System.arraycopy(SEPARATOR_BYTES, 0, ret, end, SEPARATOR_BYTES.length);
+    end = put(second, secondBytes, ret, end + SEPARATOR_BYTES.length);
+    System.arraycopy(SEPARATOR_BYTES, 0, ret, end, SEPARATOR_BYTES.length);
+    end += SEPARATOR_BYTES.length;
+    System.arraycopy(getStamp(time).date, 0, ret, end, DATE_LENGTH);
+    ret[end + DATE_LENGTH] = '\n';
+    return ret;
+  }
+
+  /**
+   * Returns the line of a LogEntry as it would be read from a log file.
+   *
+   * @param entry the entry
+   * @return the line, without its newline
+   */
+  static String toLine(LogEntry entry) {
+    byte[] line = format(entry.getFirst(), entry.getSecond(), entry.getTime());
+    return new String(line, 0, line.length - 1, CHARSET);
+  }
+
+  /**
+   * Parses a line written by format, or by the String.format the logs used before.
+   *
+   * @param line the line, without its newline
+   * @return the LogEntry, or null if the line isn't a log line
+   */
+  public static LogEntry parse(String line) {
+    int firstEnd = line.indexOf(SEPARATOR);
+    int secondEnd = line.lastIndexOf(SEPARATOR);
+    if (firstEnd < 0 || secondEnd <= firstEnd) {
+      return null;
+    }
+    String first = line.substring(0, firstEnd);
+    String second = line.substring(firstEnd + SEPARATOR.length(), secondEnd);
+    return new LogEntry(first, second, parseDate(line, secondEnd + SEPARATOR.length()));
+  }
+
+  /**
+   * Parses a "MM/dd/yy HH:mm:ss" date in the default time zone.
+   *
+   * @param line the text containing the date
+   * @param start where the date starts
+   * @return milliseconds since the epoch, or -1 if it isn't a date
+   */
+  static long parseDate(CharSequence line, int start) {
+    if (line.length() - start < DATE_LENGTH) {
+      return -1;
+    }
+    int month = digits(line, start);
+    int day = digits(line, start + 3);
+    int year = digits(line, start + 6);
+    int hour = digits(line, start + 9);
+    int minute = digits(line, start + 12);
+    int second = digits(line, start + 15);
+    if ((month | day | year | hour | minute | second) < 0) {
+      return -1;
+    }
+    try {
+      return LocalDateTime.of(2000 + year, month, day, hour, minute, second)
+              .atZone(ZoneId.systemDefault())
+              .toEpochSecond()
+          * 1000;
+    } catch (DateTimeException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Returns the value of two decimal digits.
+   *
+   * @param text the text containing the digits
+   * @param start where the digits start
+   * @return the value, or -1 if they aren't digits
+   */
+  private static int digits(CharSequence text, int start) {
+    int tens = text.charAt(start) - '0';
+    int ones = text.charAt(start + 1) - '0';
+    if (tens < 0 || tens > 9 || ones < 0 || ones > 9) {
+      return -1;
+    }
+    return tens * 10 + ones;
+  }
+
+  /**
+   * Returns the encoded date of the second the given time is in, reusing the last one if it is in
+   * the same second.
+   *
+   * @param time milliseconds since the epoch
+   * @return Stamp
+   */
+  private static Stamp getStamp(long time) {
+    long second = Math.floorDiv(time, 1000);
+    Stamp current = stamp;
+    if (current.second != second) {
+      current = new Stamp(second, encodeDate(second));
+      stamp = current;
+    }
+    return current;
+  }
+
+  /**
+   * Encodes the date of a second as "MM/dd/yy HH:mm:ss" in the default time zone.
+   *
+   * @param second seconds since the epoch
+   * @return byte[] of the date
+   */
+  private static byte[] encodeDate(long second) {
+    ZonedDateTime date = Instant.ofEpochSecond(second).atZone(ZoneId.systemDefault());
+    byte[] ret = new byte[DATE_LENGTH];
+    putDigits(ret, 0, date.getMonthValue());
+    ret[2] = '/';
+    putDigits(ret, 3, date.getDayOfMonth());
+    ret[5] = '/';
+    putDigits(ret, 6, date.getYear() % 100);
+    ret[8] = ' ';
+    putDigits(ret, 9, date.getHour());
+    ret[11] = ':';
+    putDigits(ret, 12, date.getMinute());
+    ret[14] = ':';
+    putDigits(ret, 15, date.getSecond());
+    return ret;
+  }
+
+  /**
+   * Writes a value as two decimal digits.
+   *
+   * @param out where to write
+   * @param start where the digits go
+   * @param value the value, between 0 and 99
+   */
+  private static void putDigits(byte[] out, int start, int value) {
+    out[start] = (byte) ('0' + value / 10);
+    out[start + 1] = (byte) ('0' + value % 10);
+  }
+
+  /**
+   * Returns whether a String can be written byte for byte, because it's ASCII and CHARSET encodes
+   * ASCII as is.
+   *
+   * @param str the String
+   * @return boolean
+   */
+  private static boolean isAscii(String str) {
+    if (!ASCII_COMPATIBLE) {
+      return false;
+    }
+    for (int i = 0; i < str.length(); i++) {
+      if (str.charAt(i) >= 0x80) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Writes a String into a line.
+   *
+   * @param str the String
+   * @param encoded the String encoded in CHARSET, or null to write it byte for byte
+   * @param out the line
+   * @param start where to write it
+   * @return where the String ends in the line
+   */
+  private static int put(String str, byte[] encoded, byte[] out, int start) {
+    if (encoded != null) {
+      System.arraycopy(encoded, 0, out, start, encoded.length);
+      return start + encoded.length;
+    }
+    for (int i = 0; i < str.length(); i++) {
+      out[start + i] = (byte) str.charAt(i);
+    }
+    return start + str.length();
+  }
+
+  /** The encoded date of one second. */
+  private static class Stamp {
+
+    /** the second, since the epoch */
+    private final long second;
+
+    /** the date of the second, "MM/dd/yy HH:mm:ss" */
+    private final byte[] date;
+
+    /**
+     * Construct a new Stamp.
+     *
+     * @param second the second, since the epoch
+     * @param date the encoded date of the second
+     */
+    Stamp(long second, byte[] date) {
+      this.second = second;
+      this.date = date;
+    }
+  }
+}
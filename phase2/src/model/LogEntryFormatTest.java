@@ -0,0 +1,45 @@
+package model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.Calendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LogEntryFormatTest {
+
+  @Test
+  public void formatMatchesStringFormat() throws Exception {
+    Calendar calendar = Calendar.getInstance();
+    calendar.set(2019, Calendar.MARCH, 7, 9, 5, 3);
+    for (int i = 0; i < 1000; i++) {
+      calendar.add(Calendar.SECOND, 86399);
+      String expected =
+          String.format(
+              "%s%s%s%s%tD %tT\n", "old @a", " / ", "new @a @\u00e9", " / ", calendar, calendar);
+      Assert.assertArrayEquals(
+          expected.getBytes(Charset.defaultCharset()),
+          LogEntryFormat.format("old @a", "new @a @\u00e9", calendar.getTimeInMillis()));
+    }
+  }
+
+  @Test
+  public void parseReadsWhatFormatWrites() throws Exception {
+    long time = 1551949503000L;
+    String line =
+        new String(LogEntryFormat.format("[a, b]", "[a, b, c]", time), Charset.defaultCharset());
+    LogEntry entry = LogEntryFormat.parse(line.substring(0, line.length() - 1));
+    assertEquals("[a, b]", entry.getFirst());
+    assertEquals("[a, b, c]", entry.getSecond());
+    assertEquals(time, entry.getTime());
+  }
+
+  @Test
+  public void parseRejectsOtherLines() throws Exception {
+    assertNull(LogEntryFormat.parse("not a log line"));
+    assertEquals(-1, LogEntryFormat.parse("old / new / time").getTime());
+  }
+}
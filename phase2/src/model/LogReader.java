@@ -0,0 +1,350 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Indexes where each line of a log file starts, so any row, or any column of a row, can be read
+ * from the file on its own without reading the rest of the log. Only the index is kept in memory;
+ * rows are read with positional FileChannel reads when they are asked for, and the file is closed
+ * between reads so the log can still be renamed or deleted while a reader of it is kept. Lines end
+ * at "\n", "\r" or "\r\n", as with BufferedReader.readLine.
+ */
+public class LogReader {
+
+  /** the bytes of the separator between columns */
+  private static final byte[] SEPARATOR =
+      LogEntryFormat.SEPARATOR.getBytes(Charset.defaultCharset());
+
+  /** how many bytes are read at a time while indexing */
+  private static final int INDEX_BLOCK_SIZE = 8192;
+
+  /** the log file */
+  private final File log;
+
+  /** where each row starts, followed by the length of the log, in the first rows + 1 entries */
+  private final int[] offsets;
+
+  /** the number of lines */
+  private final int rows;
+
+  /** the length of the log file when it was indexed */
+  private final long length;
+
+  /** when the log file was last modified when it was indexed */
+  private final long lastModified;
+
+  /** whether the indexed bytes end with "\n", so appended bytes start a new row */
+  private final boolean endsInNewline;
+
+  /**
+   * Indexes the lines of a log file.
+   *
+   * @param log the log file
+   * @throws IOException if the log file can't be read or is over 2GB
+   */
+  public LogReader(File log) throws IOException {
+    this(log, null);
+  }
+
+  /**
+   * Indexes the lines of a log file, reusing the index of an earlier reader of the same file if
+   * the file was only appended to since, so only the appended bytes are read.
+   *
+   * @param log the log file
+   * @param previous an earlier reader of the file, or null
+   * @throws IOException if the log file can't be read or is over 2GB
+   */
+  private LogReader(File log, LogReader previous) throws IOException {
+    this.log = log;
+    lastModified = log.lastModified();
+    int[] starts = new int[16];
+    int lineCount = 0;
+    int lineStart = 0;
+    int end = 0;
+    byte last = '\n';
+    if (log.exists()) {
+      try (FileChannel channel = FileChannel.open(log.toPath(), StandardOpenOption.READ)) {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+          throw new IOException(log + " is too large to read");
+        }
+        if (previous != null && previous.length <= size && previous.endsInNewline) {
+          // Only the appended bytes need indexing.
+          starts = Arrays.copyOf(previous.offsets, Math.max(previous.offsets.length, 16));
+          lineCount = previous.rows;
+          lineStart = (int) previous.length;
+          end = lineStart;
+        }
+        ByteBuffer block = ByteBuffer.allocate(INDEX_BLOCK_SIZE);
+        int read;
+        // The file may be appended to or truncated while it's read, so read until its end.
+        while ((read = channel.read(block, end)) > 0) {
+          byte[] bytes = block.array();
+          for (int i = 0; i < read; i++, end++) {
+            byte b = bytes[i];
+            if (b == '\n' && last == '\r') {
+              // The "\n" of a "\r\n" belongs to the line the "\r" ended.
+              lineStart = end + 1;
+            } else if (b == '\n' || b == '\r') {
+              if (lineCount + 2 > starts.length) {
+                starts = Arrays.copyOf(starts, 2 * starts.length);
+              }
+              starts[lineCount++] = lineStart;
+              lineStart = end + 1;
+            }
+            last = b;
+          }
+          block.clear();
+        }
+      }
+    }
+    if (lineStart < end) {
+      if (lineCount + 2 > starts.length) {
+        starts = Arrays.copyOf(starts, lineCount + 2);
+      }
+      starts[lineCount++] = lineStart;
+    }
+    starts[lineCount] = end;
+    offsets = starts;
+    rows = lineCount;
+    length = end;
+    endsInNewline = last == '\n';
+  }
+
+  /**
+   * Returns a reader of the log file as it is now: this reader if the file hasn't changed, or a
+   * new one that only indexes what was appended since this one was made.
+   *
+   * @return LogReader
+   * @throws IOException if the log file can't be read
+   */
+  public LogReader refresh() throws IOException {
+    if (log.length() == length && log.lastModified() == lastModified) {
+      return this;
+    }
+    return new LogReader(log, this);
+  }
+
+  /**
+   * Returns the number of rows in the log.
+   *
+   * @return int
+   */
+  public int getRowCount() {
+    return rows;
+  }
+
+  /**
+   * Returns the rows of the log as this reader indexed them. The list's size doesn't change when
+   * the log file is appended to, so its size and rows stay consistent however long it is used.
+   *
+   * @return an unmodifiable List of the rows, each read only when it is asked for, which throws
+   *     UncheckedIOException if the log file can't be read
+   */
+  public List<String> getRows() {
+    return new AbstractList<String>() {
+      @Override
+      public String get(int index) {
+        return getRow(index);
+      }
+
+      @Override
+      public int size() {
+        return rows;
+      }
+    };
+  }
+
+  /**
+   * Returns a whole row of the log.
+   *
+   * @param row the row, from 0
+   * @return the line, without its line ending
+   * @throws UncheckedIOException if the log file can't be read
+   */
+  public String getRow(int row) {
+    checkRow(row);
+    try (FileChannel channel = FileChannel.open(log.toPath(), StandardOpenOption.READ)) {
+      return decodeRow(readRow(channel, row, null));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Returns one column of a row, decoding only that column.
+   *
+   * @param row the row, from 0
+   * @param column the column, between 0-2 inclusive
+   * @return the column, or null if the row has fewer columns
+   * @throws UncheckedIOException if the log file can't be read
+   */
+  public String getColumn(int row, int column) {
+    checkRow(row);
+    try (FileChannel channel = FileChannel.open(log.toPath(), StandardOpenOption.READ)) {
+      return decodeColumn(readRow(channel, row, null), column);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Returns every row of the log, opening the log file once for all of them.
+   *
+   * @return String[]
+   * @throws IOException if the log file can't be read
+   */
+  public String[] readRows() throws IOException {
+    return readAll(-1);
+  }
+
+  /**
+   * Returns one column of every row of the log, opening the log file once for all of them.
+   *
+   * @param column the column, between 0-2 inclusive
+   * @return String[], with null for the rows that have fewer columns
+   * @throws IOException if the log file can't be read
+   */
+  public String[] readColumn(int column) throws IOException {
+    return readAll(column);
+  }
+
+  /**
+   * Returns a row parsed into a LogEntry.
+   *
+   * @param row the row, from 0
+   * @return LogEntry, or null if the row isn't a log line
+   * @throws UncheckedIOException if the log file can't be read
+   */
+  public LogEntry getEntry(int row) {
+    return LogEntryFormat.parse(getRow(row));
+  }
+
+  /**
+   * Returns every row, or one column of every row, of the log.
+   *
+   * @param column the column, or -1 for the whole rows
+   * @return String[]
+   * @throws IOException if the log file can't be read
+   */
+  private String[] readAll(int column) throws IOException {
+    String[] ret = new String[rows];
+    if (rows == 0) {
+      return ret;
+    }
+    try (FileChannel channel = FileChannel.open(log.toPath(), StandardOpenOption.READ)) {
+      ByteBuffer buffer = null;
+      for (int row = 0; row < rows; row++) {
+        buffer = readRow(channel, row, buffer);
+        ret[row] = column < 0 ? decodeRow(buffer) : decodeColumn(buffer, column);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Reads the bytes of a row, without its line ending, from where the index says it is.
+   *
+   * @param channel the open log file
+   * @param row the row
+   * @param buffer a buffer to reuse if it's large enough, or null
+   * @return a heap buffer with the row's bytes from 0 to its limit
+   * @throws IOException if the log file can't be read
+   */
+  private ByteBuffer readRow(FileChannel channel, int row, ByteBuffer buffer) throws IOException {
+    int start = offsets[row];
+    int size = offsets[row + 1] - start;
+    if (buffer == null || buffer.capacity() < size) {
+      buffer = ByteBuffer.allocate(Math.max(size, 128));
+    }
+    buffer.clear().limit(size);
+    while (buffer.hasRemaining() && channel.read(buffer, start + buffer.position()) >= 0) {
+      // Keep reading until the row is read or the end of the file is reached.
+    }
+    // The file may have been truncated since it was indexed.
+    int end = buffer.position();
+    byte[] bytes = buffer.array();
+    if (end > 0 && bytes[end - 1] == '\n') {
+      end--;
+    }
+    if (end > 0 && bytes[end - 1] == '\r') {
+      end--;
+    }
+    buffer.position(0).limit(end);
+    return buffer;
+  }
+
+  /**
+   * Decodes the bytes of a row.
+   *
+   * @param row the bytes read by readRow
+   * @return String
+   */
+  private static String decodeRow(ByteBuffer row) {
+    return new String(row.array(), 0, row.limit(), Charset.defaultCharset());
+  }
+
+  /**
+   * Decodes one column of the bytes of a row.
+   *
+   * @param row the bytes read by readRow
+   * @param column the column, between 0-2 inclusive
+   * @return the column, or null if the row has fewer columns
+   */
+  private static String decodeColumn(ByteBuffer row, int column) {
+    byte[] bytes = row.array();
+    int start = 0;
+    int end = row.limit();
+    for (int i = 0; i < column; i++) {
+      int separator = indexOfSeparator(bytes, start, end);
+      if (separator < 0) {
+        return null;
+      }
+      start = separator + SEPARATOR.length;
+    }
+    int separator = indexOfSeparator(bytes, start, end);
+    int columnEnd = separator < 0 ? end : separator;
+    return new String(bytes, start, columnEnd - start, Charset.defaultCharset());
+  }
+
+  /**
+   * Returns where the next separator between columns starts.
+   *
+   * @param bytes the bytes to search
+   * @param start where to search from
+   * @param end where to search to
+   * @return the index, or -1 if there is no separator
+   */
+  private static int indexOfSeparator(byte[] bytes, int start, int end) {
+    search:
+    for (int i = start; i + SEPARATOR.length <= end; i++) {
+      for (int j = 0; j < SEPARATOR.length; j++) {
+        if (bytes[i + j] != SEPARATOR[j]) {
+          continue search;
+        }
+      }
+      return i;
+    }
+    return -1;
+  }
+
+  /**
+   * Checks that a row exists.
+   *
+   * @param row the row
+   */
+  private void checkRow(int row) {
+    if (row < 0 || row >= rows) {
+      throw new IndexOutOfBoundsException("Row " + row + " of " + rows);
+    }
+  }
+}
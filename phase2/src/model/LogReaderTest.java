@@ -0,0 +1,140 @@
+package model;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LogReaderTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+  private File file;
+
+  @Before
+  public void setUp() throws Exception {
+    file = folder.newFile("log");
+  }
+
+  private void write(String text, boolean append) throws Exception {
+    BufferedWriter writer = new BufferedWriter(new FileWriter(file, append));
+    writer.append(text);
+    writer.close();
+  }
+
+  @Test
+  public void testEmptyLog() throws Exception {
+    assertEquals(0, new LogReader(file).getRowCount());
+    assertEquals(0, new LogReader(new File(folder.getRoot(), "missing")).getRowCount());
+  }
+
+  @Test
+  public void testRowsMatchReadLine() throws Exception {
+    write("a / b / c\r\nd / e / f\rg / h / i\n\nj / k / l", false);
+    LogReader reader = new LogReader(file);
+    assertEquals(5, reader.getRowCount());
+    assertEquals("a / b / c", reader.getRow(0));
+    assertEquals("d / e / f", reader.getRow(1));
+    assertEquals("g / h / i", reader.getRow(2));
+    assertEquals("", reader.getRow(3));
+    assertEquals("j / k / l", reader.getRow(4));
+  }
+
+  @Test
+  public void testGetColumn() throws Exception {
+    write("old @a / old @a @b / 01/02/17 03:04:05\nno columns\n", false);
+    LogReader reader = new LogReader(file);
+    assertEquals(2, reader.getRowCount());
+    assertEquals("old @a", reader.getColumn(0, 0));
+    assertEquals("old @a @b", reader.getColumn(0, 1));
+    assertEquals("01/02/17 03:04:05", reader.getColumn(0, 2));
+    assertEquals("no columns", reader.getColumn(1, 0));
+    assertNull(reader.getColumn(1, 1));
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testGetRowOutOfRange() throws Exception {
+    write("a / b / c\n", false);
+    new LogReader(file).getRow(1);
+  }
+
+  @Test
+  public void testLogCanBeRenamedAndDeletedWhileKept() throws Exception {
+    write("a / b / c\n", false);
+    LogReader reader = new LogReader(file);
+    assertEquals("a / b / c", reader.getRow(0));
+    File renamed = new File(folder.getRoot(), "renamed");
+    assertTrue(file.renameTo(renamed));
+    assertTrue(renamed.delete());
+  }
+
+  @Test(expected = UncheckedIOException.class)
+  public void testRowsAreReadFromTheLogFile() throws Exception {
+    write("a / b / c\n", false);
+    LogReader reader = new LogReader(file);
+    assertTrue(file.delete());
+    reader.getRow(0);
+  }
+
+  @Test
+  public void testReadRowsAndColumns() throws Exception {
+    write("a / b / c\r\nno columns\rd / e / f", false);
+    LogReader reader = new LogReader(file);
+    Assert.assertArrayEquals(
+        new String[] {"a / b / c", "no columns", "d / e / f"}, reader.readRows());
+    Assert.assertArrayEquals(new String[] {"b", null, "e"}, reader.readColumn(1));
+  }
+
+  @Test
+  public void testLinesLongerThanABlock() throws Exception {
+    StringBuilder longLine = new StringBuilder();
+    while (longLine.length() < 20000) {
+      longLine.append("x");
+    }
+    write("a / b / c\r", false);
+    write("\n" + longLine + "\r\n" + longLine, true);
+    LogReader reader = new LogReader(file);
+    assertEquals(3, reader.getRowCount());
+    assertEquals(longLine.toString(), reader.getRow(1));
+    assertEquals(longLine.toString(), reader.getRow(2));
+  }
+
+  @Test
+  public void testRefreshAfterACarriageReturn() throws Exception {
+    write("a / b / c\r", false);
+    LogReader reader = new LogReader(file);
+    write("\nd / e / f\n", true);
+    LogReader refreshed = reader.refresh();
+    assertEquals(2, refreshed.getRowCount());
+    assertEquals("d / e / f", refreshed.getRow(1));
+  }
+
+  @Test
+  public void testGetRows() throws Exception {
+    write("a / b / c\nd / e / f\n", false);
+    List<String> rows = new LogReader(file).getRows();
+    write("g / h / i\n", true);
+    assertEquals(Arrays.asList("a / b / c", "d / e / f"), rows);
+  }
+
+  @Test
+  public void testRefreshIndexesAppendedLines() throws Exception {
+    write("a / b / c\n", false);
+    LogReader reader = new LogReader(file);
+    assertSame(reader, reader.refresh());
+    write("d / e / f\n", true);
+    LogReader refreshed = reader.refresh();
+    assertEquals(1, reader.getRowCount());
+    assertEquals(2, refreshed.getRowCount());
+    assertEquals("a / b / c", refreshed.getRow(0));
+    assertEquals("d / e / f", refreshed.getRow(1));
+  }
+}
@@ -6,9 +6,12 @@ import org.junit.rules.TemporaryFolder;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
+import java.util.List;
 
 import static junit.framework.TestCase.assertTrue;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 
 public class LogTest {
   private final String LOG_FILE_NAME = "log";
@@ -25,13 +28,17 @@ public class LogTest {
   public void tearDown() throws Exception {}
 
   @Test
-  public void testLogFileIsCreated() {
+  public void testLogFileIsCreatedOnFirstEntry() throws Exception {
     File expectedResult = new File(folder.getRoot(), LOG_FILE_FULL_NAME);
+    assertFalse(expectedResult.exists());
+    Assert.assertArrayEquals(new String[0], log.getLog());
+    log.updateLog("", "");
     assertTrue(expectedResult.exists());
   }
 
   @Test
   public void moveFile() throws Exception {
+    log.updateLog("", "");
     File tempFolder = folder.newFolder("folder");
     log.moveFile(tempFolder.getPath());
     File expectedResult = new File(tempFolder.getPath(), LOG_FILE_FULL_NAME);
@@ -40,6 +47,33 @@ public class LogTest {
     assertFalse(shouldntExist.exists());
   }
 
+  @Test
+  public void moveFileFailsWhenTheLogCantBeMoved() throws Exception {
+    log.updateLog("", "");
+    File missingFolder = new File(folder.getRoot(), "missing");
+    assertFalse(log.moveFile(missingFolder.getPath()));
+    assertTrue(new File(folder.getRoot(), LOG_FILE_FULL_NAME).exists());
+    assertEquals(1, log.getRows().size());
+  }
+
+  @Test(expected = Exception.class)
+  public void updateLogFailsWhenTheLogCantBeRenamed() throws Exception {
+    log.updateLog("", "");
+    File inTheWay = folder.newFolder(".newName.log");
+    new File(inTheWay, "file").createNewFile();
+    log.updateLog("", "", "newName");
+  }
+
+  @Test
+  public void getRowsDoesntChangeWhenTheLogDoes() throws Exception {
+    log.updateLog("a", "b");
+    List<String> rows = log.getRows();
+    log.updateLog("c", "d");
+    assertEquals(1, rows.size());
+    assertTrue(rows.get(0).startsWith("a / b / "));
+    assertEquals(2, log.getRows().size());
+  }
+
   @Test
   public void updateLog() throws Exception {
     String newName = "newName";
@@ -77,6 +111,19 @@ public class LogTest {
     Assert.assertArrayEquals(expectedResults, log.getLog());
   }
 
+  @Test
+  public void getLastLine() throws Exception {
+    assertNull(log.getLastLine());
+    File file = new File(folder.getRoot(), LOG_FILE_FULL_NAME);
+    BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+    for (int i = 0; i < 1000; i++) {
+      writer.append("oldname" + i + " / newname" + i + " / time\n");
+    }
+    writer.append("\n");
+    writer.close();
+    assertEquals("oldname999 / newname999 / time", log.getLastLine());
+  }
+
   @Test
   public void getColumnWithSpecialEntries() throws Exception {
     File file = new File(folder.getRoot(), LOG_FILE_FULL_NAME);
@@ -0,0 +1,524 @@
+package model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends entries to log files through FileChannels that are kept open between writes. Entries
+ * from many threads are written in group commits: while one writer is committing, the entries of
+ * the others queue up, and the next writer to lead commits them all with one write per file and
+ * at most one force per file. Writes aren't interruptible: a writer interrupted while it waits
+ * or commits finishes its append and returns with its interrupt status set.
+ */
+public class LogWriter {
+
+  /** the most channels kept open at once; the least recently used one is closed past this */
+  private static final int MAX_OPEN_CHANNELS = 64;
+
+  /** how often PERIODIC durability forces the open channels, in milliseconds */
+  private static final long DEFAULT_PERIOD = 1000;
+
+  /** runs the periodic forces of every LogWriter with PERIODIC durability */
+  private static final ScheduledExecutorService flusher =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "LogWriter flusher");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  /** the LogWriter every Log writes through */
+  private static final LogWriter instance = new LogWriter(Durability.NONE, DEFAULT_PERIOD);
+
+  static {
+    Runtime.getRuntime().addShutdownHook(new Thread(instance::closeAll));
+  }
+
+  /** the open channels, from least to most recently used */
+  private final Map<File, FileChannel> channels;
+
+  /** the log files written since their channels were last forced */
+  private final Set<File> dirty;
+
+  /** the entries waiting for the next group commit */
+  private List<Pending> queue;
+
+  /** whether some writer is leading a group commit */
+  private boolean committing;
+
+  /** how hard commits try to get entries onto the disk */
+  private volatile Durability durability;
+
+  /** how often PERIODIC durability forces the open channels, in milliseconds */
+  private volatile long period;
+
+  /** when the open channels were last forced */
+  private long lastForce;
+
+  /** whether the leader of the current group commit was interrupted while writing */
+  private boolean leaderInterrupted;
+
+  /** the scheduled periodic force, or null if the durability isn't PERIODIC */
+  private ScheduledFuture<?> flushTask;
+
+  /**
+   * Construct a new LogWriter.
+   *
+   * @param durability how hard commits try to get entries onto the disk
+   * @param period how often PERIODIC durability forces the channels, in milliseconds
+   */
+  LogWriter(Durability durability, long period) {
+    this.durability = durability;
+    this.period = period;
+    channels = new LinkedHashMap<>(16, 0.75f, true);
+    dirty = new LinkedHashSet<>();
+    queue = new ArrayList<>();
+    lastForce = System.currentTimeMillis();
+    schedule();
+  }
+
+  /**
+   * Returns the LogWriter every Log writes through.
+   *
+   * @return LogWriter
+   */
+  public static LogWriter getInstance() {
+    return instance;
+  }
+
+  /**
+   * Sets how hard commits try to get entries onto the disk.
+   *
+   * @param durability the durability
+   */
+  public void setDurability(Durability durability) {
+    this.durability = durability;
+    schedule();
+  }
+
+  /**
+   * Returns how hard commits try to get entries onto the disk.
+   *
+   * @return Durability
+   */
+  public Durability getDurability() {
+    return durability;
+  }
+
+  /**
+   * Sets how often PERIODIC durability forces the open channels.
+   *
+   * @param period the period in milliseconds
+   */
+  public void setPeriod(long period) {
+    this.period = period;
+    schedule();
+  }
+
+  /**
+   * Appends an entry to a log file, creating the file if needed, and returns once the group commit
+   * that includes it is done.
+   *
+   * @param log the log file
+   * @param entry the text to append
+   * @throws IOException if the entry couldn't be written
+   */
+  public void append(File log, String entry) throws IOException {
+    append(log, entry.getBytes(Charset.defaultCharset()));
+  }
+
+  /**
+   * Appends an already encoded entry to a log file, creating the file if needed, and returns once
+   * the group commit that includes it is done.
+   *
+   * @param log the log file
+   * @param entry the bytes to append, which mustn't be changed afterwards
+   * @throws IOException if the entry couldn't be written
+   */
+  public void append(File log, byte[] entry) throws IOException {
+    // An interrupt would close the shared channels mid-write, so hold it until the append is done.
+    boolean interrupted = Thread.interrupted();
+    try {
+      Pending pending = new Pending(log, entry);
+      List<Pending> batch = null;
+      synchronized (this) {
+        queue.add(pending);
+        while (!pending.done && committing) {
+          interrupted |= waitForCommit();
+        }
+        if (!pending.done) {
+          batch = lead();
+        }
+      }
+      if (batch != null) {
+        try {
+          commit(batch);
+        } finally {
+          interrupted |= finish(batch);
+        }
+      }
+      if (pending.error != null) {
+        throw pending.error;
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Commits the queued entries and closes the channel of a log file, so it can be renamed or
+   * moved.
+   *
+   * @param log the log file
+   */
+  public void close(File log) {
+    boolean interrupted = Thread.interrupted();
+    List<Pending> batch;
+    synchronized (this) {
+      while (committing) {
+        interrupted |= waitForCommit();
+      }
+      batch = lead();
+    }
+    try {
+      commit(batch);
+      closeChannel(log);
+    } finally {
+      interrupted |= finish(batch);
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /** Commits the queued entries and forces and closes every open channel. */
+  public void closeAll() {
+    boolean interrupted = Thread.interrupted();
+    List<Pending> batch;
+    synchronized (this) {
+      while (committing) {
+        interrupted |= waitForCommit();
+      }
+      batch = lead();
+    }
+    try {
+      commit(batch);
+      for (File log : new ArrayList<>(channels.keySet())) {
+        closeChannel(log);
+      }
+    } finally {
+      interrupted |= finish(batch);
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Forces the channels written since they were last forced, so PERIODIC entries reach the disk
+   * within a period even when no more entries are appended after them.
+   */
+  private void forcePeriodically() {
+    List<Pending> batch;
+    synchronized (this) {
+      if (durability != Durability.PERIODIC) {
+        return;
+      }
+      while (committing) {
+        if (waitForCommit()) {
+          // The flusher is being shut down.
+          return;
+        }
+      }
+      batch = lead();
+    }
+    try {
+      commit(batch);
+      forceDirty(System.currentTimeMillis());
+    } finally {
+      if (finish(batch)) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /** Schedules the periodic force if the durability is PERIODIC, or cancels it if it isn't. */
+  private synchronized void schedule() {
+    if (flushTask != null) {
+      flushTask.cancel(false);
+      flushTask = null;
+    }
+    if (durability == Durability.PERIODIC) {
+      flushTask =
+          flusher.scheduleWithFixedDelay(
+              this::forcePeriodically,
+              Math.max(1, period),
+              Math.max(1, period),
+              TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Makes the calling thread the leader of the next group commit. Must be called holding the lock
+   * while no commit is in progress.
+   *
+   * @return the entries to commit
+   */
+  private List<Pending> lead() {
+    committing = true;
+    List<Pending> batch = queue;
+    queue = new ArrayList<>();
+    return batch;
+  }
+
+  /**
+   * Marks a group commit as done and wakes the writers waiting for it.
+   *
+   * @param batch the entries that were committed
+   * @return whether the leader was interrupted while committing
+   */
+  private synchronized boolean finish(List<Pending> batch) {
+    for (Pending pending : batch) {
+      pending.done = true;
+    }
+    committing = false;
+    notifyAll();
+    boolean interrupted = leaderInterrupted;
+    leaderInterrupted = false;
+    return interrupted;
+  }
+
+  /**
+   * Waits, holding the lock, until the current group commit is done or the thread is interrupted.
+   * The interrupt status is cleared, so the caller can wait again and restore it afterwards.
+   *
+   * @return whether the thread was interrupted
+   */
+  private boolean waitForCommit() {
+    try {
+      wait();
+      return false;
+    } catch (InterruptedException e) {
+      return true;
+    }
+  }
+
+  /**
+   * Writes a batch of entries with one write per log file, then forces the channels as the
+   * durability asks. Only the leader of a group commit calls this.
+   *
+   * @param batch the entries to write, in the order they were appended
+   */
+  private void commit(List<Pending> batch) {
+    Map<File, List<Pending>> byLog = new LinkedHashMap<>();
+    for (Pending pending : batch) {
+      byLog.computeIfAbsent(pending.log, log -> new ArrayList<>()).add(pending);
+    }
+    Map<File, List<Pending>> written = new LinkedHashMap<>();
+    for (Map.Entry<File, List<Pending>> entry : byLog.entrySet()) {
+      List<Pending> entries = entry.getValue();
+      try {
+        write(entry.getKey(), ByteBuffer.wrap(join(entries)));
+        written.put(entry.getKey(), entries);
+      } catch (IOException e) {
+        for (Pending pending : entries) {
+          pending.error = e;
+        }
+      }
+    }
+    force(written);
+  }
+
+  /**
+   * Forces the channels to the disk as the durability asks. With SYNC durability an entry whose
+   * channel couldn't be forced gets the error.
+   *
+   * @param written the entries written in this commit, by the log file they were written to
+   */
+  private void force(Map<File, List<Pending>> written) {
+    Durability durability = this.durability;
+    long now = System.currentTimeMillis();
+    if (durability == Durability.SYNC) {
+      for (Map.Entry<File, List<Pending>> entry : written.entrySet()) {
+        try {
+          force(entry.getKey());
+        } catch (IOException e) {
+          for (Pending pending : entry.getValue()) {
+            pending.error = e;
+          }
+        }
+      }
+      lastForce = now;
+    } else if (durability == Durability.PERIODIC) {
+      dirty.addAll(written.keySet());
+      if (now - lastForce >= period) {
+        forceDirty(now);
+      }
+    }
+  }
+
+  /**
+   * Forces the channels written since they were last forced. Only the leader of a group commit
+   * calls this.
+   *
+   * @param now the current time
+   */
+  private void forceDirty(long now) {
+    for (File log : dirty) {
+      try {
+        force(log);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+    dirty.clear();
+    lastForce = now;
+  }
+
+  /**
+   * Writes all of a buffer to a log file. An interrupt closes the channel it arrives during, so
+   * the channel is opened again and the rest of the buffer written, and the interrupt is handed
+   * back to the leader when the commit is done.
+   *
+   * @param log the log file
+   * @param buffer the bytes to write
+   * @throws IOException if the bytes couldn't be written
+   */
+  private void write(File log, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      try {
+        getChannel(log).write(buffer);
+      } catch (ClosedByInterruptException e) {
+        leaderInterrupted |= Thread.interrupted();
+      }
+    }
+  }
+
+  /**
+   * Forces the channel of a log file to the disk, opening it again if an interrupt closes it.
+   *
+   * @param log the log file
+   * @throws IOException if the channel couldn't be forced
+   */
+  private void force(File log) throws IOException {
+    while (true) {
+      try {
+        getChannel(log).force(false);
+        return;
+      } catch (ClosedByInterruptException e) {
+        leaderInterrupted |= Thread.interrupted();
+      }
+    }
+  }
+
+  /**
+   * Returns the open channel for a log file, opening it if needed and closing the least recently
+   * used channel if too many are open.
+   *
+   * @param log the log file
+   * @return the FileChannel, positioned at the end of the file
+   * @throws IOException if the file can't be opened
+   */
+  private FileChannel getChannel(File log) throws IOException {
+    FileChannel channel = channels.get(log);
+    if (channel == null || !channel.isOpen()) {
+      channel =
+          FileChannel.open(
+              log.toPath(),
+              StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.APPEND);
+      channels.put(log, channel);
+      if (channels.size() > MAX_OPEN_CHANNELS) {
+        closeChannel(channels.keySet().iterator().next());
+      }
+    }
+    return channel;
+  }
+
+  /**
+   * Forces the channel of a log file if PERIODIC entries may not have reached the disk yet, then
+   * closes it.
+   *
+   * @param log the log file
+   */
+  private void closeChannel(File log) {
+    try {
+      if (dirty.remove(log)) {
+        force(log);
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    FileChannel channel = channels.remove(log);
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
+  /**
+   * Returns the bytes of several entries one after the other.
+   *
+   * @param entries the entries
+   * @return byte[]
+   */
+  private static byte[] join(List<Pending> entries) {
+    if (entries.size() == 1) {
+      return entries.get(0).bytes;
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (Pending pending : entries) {
+      out.write(pending.bytes, 0, pending.bytes.length);
+    }
+    return out.toByteArray();
+  }
+
+  /** An entry waiting to be committed. */
+  private static class Pending {
+
+    /** the log file to append to */
+    private final File log;
+
+    /** the encoded entry */
+    private final byte[] bytes;
+
+    /** whether the group commit that included this entry is done */
+    private boolean done;
+
+    /** why the entry couldn't be written, or null if it was */
+    private IOException error;
+
+    /**
+     * Construct a new Pending entry.
+     *
+     * @param log the log file to append to
+     * @param bytes the encoded entry
+     */
+    Pending(File log, byte[] bytes) {
+      this.log = log;
+      this.bytes = bytes;
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package model;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LogWriterTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void concurrentAppendsAreAllWritten() throws Exception {
+    LogWriter logWriter = new LogWriter(Durability.NONE, 0);
+    File[] logs = {new File(folder.getRoot(), ".a.log"), new File(folder.getRoot(), ".b.log")};
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      int thread = t;
+      threads.add(
+          new Thread(
+              () -> {
+                for (int i = 0; i < 100; i++) {
+                  try {
+                    logWriter.append(logs[i % 2], thread + " " + i + "\n");
+                  } catch (Exception e) {
+                    throw new RuntimeException(e);
+                  }
+                }
+              }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    for (File log : logs) {
+      List<String> lines = Files.readAllLines(log.toPath());
+      assertEquals(400, lines.size());
+      assertEquals(400, lines.stream().distinct().count());
+    }
+    logWriter.closeAll();
+  }
+
+  @Test
+  public void interruptedWritersFinishAndStayInterrupted() throws Exception {
+    LogWriter logWriter = new LogWriter(Durability.PERIODIC, 10);
+    File log = new File(folder.getRoot(), ".a.log");
+    Thread.currentThread().interrupt();
+    logWriter.append(log, "first\n");
+    logWriter.append(log, "second\n");
+    assertTrue(Thread.interrupted());
+    assertEquals(2, Files.readAllLines(log.toPath()).size());
+    logWriter.closeAll();
+  }
+
+  @Test
+  public void writersInterruptedWhileWaitingFinishAndStayInterrupted() throws Exception {
+    LogWriter logWriter = new LogWriter(Durability.NONE, 0);
+    File log = new File(folder.getRoot(), ".a.log");
+    List<Thread> threads = new ArrayList<>();
+    List<Boolean> interrupted = Collections.synchronizedList(new ArrayList<>());
+    AtomicBoolean allInterrupted = new AtomicBoolean();
+    AtomicInteger appended = new AtomicInteger();
+    for (int t = 0; t < 8; t++) {
+      threads.add(
+          new Thread(
+              () -> {
+                try {
+                  // Keep appending until every writer has been interrupted mid-append.
+                  for (int i = 0; i < 100 || !allInterrupted.get(); i++) {
+                    logWriter.append(log, "entry\n");
+                    appended.incrementAndGet();
+                  }
+                } catch (Exception e) {
+                  throw new RuntimeException(e);
+                }
+                interrupted.add(Thread.currentThread().isInterrupted());
+              }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.interrupt();
+    }
+    allInterrupted.set(true);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    logWriter.closeAll();
+    assertEquals(appended.get(), Files.readAllLines(log.toPath()).size());
+    assertEquals(Collections.nCopies(8, true), interrupted);
+  }
+
+  @Test
+  public void closedLogsCanBeRenamed() throws Exception {
+    LogWriter logWriter = new LogWriter(Durability.SYNC, 0);
+    File log = new File(folder.getRoot(), ".a.log");
+    File renamed = new File(folder.getRoot(), ".b.log");
+    logWriter.append(log, "first\n");
+    logWriter.close(log);
+    assertTrue(log.renameTo(renamed));
+    logWriter.append(renamed, "second\n");
+    List<String> lines = Files.readAllLines(renamed.toPath());
+    assertEquals(2, lines.size());
+    assertEquals("first", lines.get(0));
+    assertEquals("second", lines.get(1));
+    logWriter.closeAll();
+  }
+}
@@ -0,0 +1,88 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Walks a directory tree with Files.walkFileTree so that every entry's attributes are read once,
+ * instead of probing each File with isDirectory(), isFile() and list() separately.
+ */
+class NioFileWalker extends SimpleFileVisitor<Path> {
+
+  /** the test a file's name must pass to be collected */
+  private final Predicate<String> nameFilter;
+
+  /** the matching files found so far, with the attributes read while walking */
+  private final Map<File, BasicFileAttributes> matchingFiles;
+
+  /**
+   * Construct a new NioFileWalker.
+   *
+   * @param nameFilter the test a file's name must pass to be collected
+   */
+  private NioFileWalker(Predicate<String> nameFilter) {
+    this.nameFilter = nameFilter;
+    matchingFiles = new LinkedHashMap<>();
+  }
+
+  /**
+   * Returns all the matching files under root along with their attributes.
+   *
+   * @param root the directory (or file) to walk
+   * @param nameFilter the test a file's name must pass to be collected
+   * @param recursive true to walk the whole tree, false for just the direct children of root
+   * @return a Map from each matching file to its attributes
+   */
+  static Map<File, BasicFileAttributes> walk(
+      File root, Predicate<String> nameFilter, boolean recursive) {
+    NioFileWalker walker = new NioFileWalker(nameFilter);
+    try {
+      Files.walkFileTree(
+          root.toPath(),
+          EnumSet.of(FileVisitOption.FOLLOW_LINKS),
+          recursive ? Integer.MAX_VALUE : 1,
+          walker);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    return walker.matchingFiles;
+  }
+
+  /**
+   * Collect the file if its name matches.
+   *
+   * @param file the file being visited
+   * @param attrs the attributes of the file, read once by walkFileTree
+   * @return FileVisitResult.CONTINUE
+   */
+  @Override
+  public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+    // Directories at the maximum depth are visited as files, so they have to be skipped here.
+    if (attrs.isRegularFile() && nameFilter.test(file.getFileName().toString())) {
+      matchingFiles.put(file.toFile(), attrs);
+    }
+    return FileVisitResult.CONTINUE;
+  }
+
+  /**
+   * Skip entries that can't be read, such as directories without permission or symlink loops.
+   *
+   * @param file the file that couldn't be visited
+   * @param exc the reason it couldn't be visited
+   * @return FileVisitResult.CONTINUE
+   */
+  @Override
+  public FileVisitResult visitFileFailed(Path file, IOException exc) {
+    return FileVisitResult.CONTINUE;
+  }
+}
@@ -0,0 +1,66 @@
+package model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+
+/** Walks a directory tree in parallel, with one task forked for each subdirectory. */
+class ParallelFileWalker extends RecursiveTask<List<File>> {
+
+  /** the version of this class's serialized form */
+  private static final long serialVersionUID = 1L;
+
+  /** the directory (or file) walked by this task */
+  private final File root;
+
+  /** the test a file's name must pass to be collected */
+  private final Predicate<String> nameFilter;
+
+  /**
+   * Construct a new ParallelFileWalker for the tree under root.
+   *
+   * @param root the directory to walk
+   * @param nameFilter the test a file's name must pass to be collected
+   */
+  ParallelFileWalker(File root, Predicate<String> nameFilter) {
+    this.root = root;
+    this.nameFilter = nameFilter;
+  }
+
+  /**
+   * Collect all the matching files under root, forking a subtask for each subdirectory.
+   *
+   * @return a List of all the matching files under root
+   */
+  @Override
+  protected List<File> compute() {
+    List<File> matchingFiles = new ArrayList<>();
+    if (root.isFile()) {
+      if (nameFilter.test(root.getName())) {
+        matchingFiles.add(root);
+      }
+      return matchingFiles;
+    }
+    File[] children = root.listFiles();
+    if (children == null) {
+      return matchingFiles;
+    }
+    List<ParallelFileWalker> subtasks = new ArrayList<>();
+    for (File child : children) {
+      if (child.isDirectory()) {
+        ParallelFileWalker subtask = new ParallelFileWalker(child, nameFilter);
+        subtask.fork();
+        subtasks.add(subtask);
+      } else if (child.isFile() && nameFilter.test(child.getName())) {
+        matchingFiles.add(child);
+      }
+    }
+    // Join in reverse order of forking so the most recently forked tasks are usually run inline.
+    for (int i = subtasks.size() - 1; i >= 0; i--) {
+      matchingFiles.addAll(subtasks.get(i).join());
+    }
+    return matchingFiles;
+  }
+}
@@ -0,0 +1,13 @@
+package model;
+
+/** Is told how far a long-running operation over many files has got. */
+public interface ProgressListener {
+
+  /**
+   * Called each time another file is done. May be called from any thread.
+   *
+   * @param done how many files are done so far
+   * @param total how many files there are altogether
+   */
+  void onProgress(int done, int total);
+}
@@ -0,0 +1,26 @@
+package model;
+
+/** The strategies a TaggableFileManager can use to find the files under its root. */
+public enum ScanMode {
+  /** Walk the directory tree breadth-first on the calling thread. */
+  SEQUENTIAL,
+
+  /** Split the directory tree into subtrees that are walked in parallel on a ForkJoinPool. */
+  PARALLEL,
+
+  /** Walk the directory tree with java.nio, reading each entry's attributes only once. */
+  NIO,
+
+  /**
+   * Keep an in-memory index of the tree that is updated from a WatchService, so the tree is only
+   * walked once and later scans just apply the changes made since. The index is built from the
+   * saved snapshot of the last scan, as in SNAPSHOT, so only changed directories are listed.
+   */
+  WATCH,
+
+  /**
+   * Walk the directory tree using a snapshot of the last scan saved on disk, only listing the
+   * directories whose modification time changed since.
+   */
+  SNAPSHOT
+}
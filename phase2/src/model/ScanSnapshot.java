@@ -0,0 +1,364 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A record of the last scan of a root (the directories and their modification times, and the files
+ * and tags found in them) that is saved to disk, so that later scans only have to list the
+ * directories that changed since. Renaming, adding or removing a file changes the modification
+ * time of its directory, so the files themselves don't need to be checked.
+ */
+class ScanSnapshot {
+  /** identifies a snapshot file */
+  private static final int MAGIC = 0x54475353;
+
+  /** the version of the snapshot file format */
+  private static final int VERSION = 2;
+
+  /** the suffix of a snapshot file */
+  private static final String SNAPSHOT_FILE_SUFFIX = ".snapshot";
+
+  /**
+   * How close (in milliseconds) a directory's modification time can be to when it was listed
+   * before it's listed again anyway, since some filesystems only keep modification times to the
+   * second and a change made right after the listing wouldn't move it.
+   */
+  private static final long MODIFIED_TIME_RESOLUTION = 2000;
+
+  /** the root the snapshot is of */
+  private final File root;
+
+  /** the file the snapshot is saved to */
+  private final File snapshotFile;
+
+  /** what was found in each directory, by absolute path */
+  private Map<String, DirectoryEntry> directories;
+
+  /** whether the snapshot changed since it was loaded or saved */
+  private boolean dirty;
+
+  /**
+   * Construct a new ScanSnapshot of root, loading the saved one if there is one.
+   *
+   * @param root the root the snapshot is of
+   * @param snapshotFile the file the snapshot is saved to
+   */
+  ScanSnapshot(File root, File snapshotFile) {
+    this.root = root.getAbsoluteFile();
+    this.snapshotFile = snapshotFile;
+    directories = new HashMap<>();
+    load();
+  }
+
+  /**
+   * Construct a new ScanSnapshot of root that is saved in the user's home directory, in a file
+   * named by the SHA-1 hash of the root's absolute path.
+   *
+   * @param root the root the snapshot is of
+   * @return ScanSnapshot
+   */
+  static ScanSnapshot forRoot(File root) {
+    File snapshotDirectory =
+        new File(System.getProperty("user.home"), ".tagger" + File.separator + "snapshots");
+    String name = sha1(root.getAbsolutePath()) + SNAPSHOT_FILE_SUFFIX;
+    return new ScanSnapshot(root, new File(snapshotDirectory, name));
+  }
+
+  /**
+   * Returns the SHA-1 hash of a String, in hexadecimal.
+   *
+   * @param str the String
+   * @return String
+   */
+  private static String sha1(String str) {
+    byte[] digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1").digest(str.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform has SHA-1.
+      throw new IllegalStateException(e);
+    }
+    StringBuilder ret = new StringBuilder(2 * digest.length);
+    for (byte b : digest) {
+      ret.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return ret.toString();
+  }
+
+  /**
+   * Returns the files under the root whose names pass the given test. Only the directories whose
+   * modification time changed since the last scan are listed; the rest come from the snapshot.
+   *
+   * @param nameFilter the test a file's name must pass to be returned
+   * @param recursive true to walk the whole tree, false for just the files directly in the root
+   * @return a List of the matching files
+   */
+  List<File> walk(Predicate<String> nameFilter, boolean recursive) {
+    return walk(nameFilter, recursive, directory -> {});
+  }
+
+  /**
+   * Returns the files under the root whose names pass the given test, telling the visitor about
+   * each directory before its contents are taken from the snapshot or listed.
+   *
+   * @param nameFilter the test a file's name must pass to be returned
+   * @param recursive true to walk the whole tree, false for just the files directly in the root
+   * @param visitor told about each directory, parents before their subdirectories
+   * @return a List of the matching files
+   */
+  List<File> walk(Predicate<String> nameFilter, boolean recursive, Consumer<File> visitor) {
+    List<File> matchingFiles = new ArrayList<>();
+    Map<String, DirectoryEntry> visited = new HashMap<>();
+    Deque<File> toVisit = new ArrayDeque<>();
+    toVisit.push(root);
+    while (!toVisit.isEmpty()) {
+      File directory = toVisit.pop();
+      visitor.accept(directory);
+      DirectoryEntry entry = getDirectoryEntry(directory);
+      if (entry == null) {
+        continue;
+      }
+      visited.put(directory.getPath(), entry);
+      for (FileEntry fileEntry : entry.files.values()) {
+        if (nameFilter.test(fileEntry.name)) {
+          matchingFiles.add(new File(directory, fileEntry.name));
+        }
+      }
+      if (recursive) {
+        for (String subdirectory : entry.subdirectories) {
+          toVisit.push(new File(directory, subdirectory));
+        }
+      }
+    }
+    if (recursive) {
+      // Any directory that wasn't reached no longer exists under the root.
+      dirty |= directories.size() != visited.size();
+      directories = visited;
+    } else {
+      directories.putAll(visited);
+    }
+    return matchingFiles;
+  }
+
+  /**
+   * Returns the tags that were found in the name of the given file when it was last listed.
+   *
+   * @param file a file under the root
+   * @return a String[] of the file's tags, or null if the file isn't in the snapshot
+   */
+  String[] getTags(File file) {
+    DirectoryEntry entry = directories.get(file.getParent());
+    if (entry != null && entry.files.containsKey(file.getName())) {
+      return entry.files.get(file.getName()).tags;
+    }
+    return null;
+  }
+
+  /**
+   * Returns the file the snapshot is saved to.
+   *
+   * @return File
+   */
+  File getSnapshotFile() {
+    return snapshotFile;
+  }
+
+  /** Saves the snapshot if it changed since it was loaded or last saved. */
+  void save() {
+    if (!dirty) {
+      return;
+    }
+    File parent = snapshotFile.getParentFile();
+    if (parent != null && !parent.exists() && !parent.mkdirs()) {
+      return;
+    }
+    File tempFile = new File(parent, snapshotFile.getName() + ".tmp");
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeUTF(root.getPath());
+      out.writeInt(directories.size());
+      for (Map.Entry<String, DirectoryEntry> directory : directories.entrySet()) {
+        DirectoryEntry entry = directory.getValue();
+        out.writeUTF(directory.getKey());
+        out.writeLong(entry.lastModified);
+        out.writeLong(entry.listedAt);
+        out.writeInt(entry.subdirectories.size());
+        for (String subdirectory : entry.subdirectories) {
+          out.writeUTF(subdirectory);
+        }
+        out.writeInt(entry.files.size());
+        for (FileEntry fileEntry : entry.files.values()) {
+          out.writeUTF(fileEntry.name);
+          out.writeInt(fileEntry.tags.length);
+          for (String tag : fileEntry.tags) {
+            out.writeUTF(tag);
+          }
+        }
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+      return;
+    }
+    try {
+      Files.move(
+          tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      dirty = false;
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /** Loads the saved snapshot, if there is a readable one of the same root. */
+  private void load() {
+    if (!snapshotFile.exists()) {
+      return;
+    }
+    Map<String, DirectoryEntry> loaded = new HashMap<>();
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+      if (in.readInt() != MAGIC
+          || in.readInt() != VERSION
+          || !in.readUTF().equals(root.getPath())) {
+        return;
+      }
+      int directoryCount = in.readInt();
+      for (int i = 0; i < directoryCount; i++) {
+        String path = in.readUTF();
+        DirectoryEntry entry = new DirectoryEntry(in.readLong(), in.readLong());
+        int subdirectoryCount = in.readInt();
+        for (int j = 0; j < subdirectoryCount; j++) {
+          entry.subdirectories.add(in.readUTF());
+        }
+        int fileCount = in.readInt();
+        for (int j = 0; j < fileCount; j++) {
+          String name = in.readUTF();
+          String[] tags = new String[in.readInt()];
+          for (int k = 0; k < tags.length; k++) {
+            tags[k] = in.readUTF();
+          }
+          entry.files.put(name, new FileEntry(name, tags));
+        }
+        loaded.put(path, entry);
+      }
+    } catch (IOException e) {
+      // A truncated or corrupt snapshot is no worse than not having one.
+      return;
+    }
+    directories = loaded;
+  }
+
+  /**
+   * Returns what's in the given directory, listing it only if it changed since it was last listed.
+   *
+   * @param directory the directory to get the contents of
+   * @return DirectoryEntry, or null if directory can't be read
+   */
+  private DirectoryEntry getDirectoryEntry(File directory) {
+    long lastModified = directory.lastModified();
+    if (lastModified == 0) {
+      return null;
+    }
+    DirectoryEntry entry = directories.get(directory.getPath());
+    if (entry != null
+        && entry.lastModified == lastModified
+        && entry.listedAt - lastModified > MODIFIED_TIME_RESOLUTION) {
+      return entry;
+    }
+    entry = new DirectoryEntry(lastModified, System.currentTimeMillis());
+    try (DirectoryStream<Path> children = Files.newDirectoryStream(directory.toPath())) {
+      for (Path child : children) {
+        BasicFileAttributes attributes;
+        try {
+          attributes = Files.readAttributes(child, BasicFileAttributes.class);
+        } catch (IOException e) {
+          continue;
+        }
+        String name = child.getFileName().toString();
+        if (attributes.isDirectory()) {
+          entry.subdirectories.add(name);
+        } else if (attributes.isRegularFile()) {
+          String[] tags = AbsTaggableFile.extractTags(AbsTaggableFile.stripSuffix(name));
+          entry.files.put(name, new FileEntry(name, tags));
+        }
+      }
+    } catch (IOException e) {
+      return null;
+    }
+    dirty = true;
+    return entry;
+  }
+
+  /** What was found in a directory the last time it was listed. */
+  private static class DirectoryEntry {
+    /** the modification time of the directory when it was listed */
+    private final long lastModified;
+
+    /** when the directory was listed */
+    private final long listedAt;
+
+    /** the names of the directories in the directory */
+    private final List<String> subdirectories;
+
+    /** the files in the directory, by name */
+    private final Map<String, FileEntry> files;
+
+    /**
+     * Construct a new, empty DirectoryEntry.
+     *
+     * @param lastModified the modification time of the directory when it was listed
+     * @param listedAt when the directory was listed
+     */
+    private DirectoryEntry(long lastModified, long listedAt) {
+      this.lastModified = lastModified;
+      this.listedAt = listedAt;
+      subdirectories = new ArrayList<>();
+      files = new LinkedHashMap<>();
+    }
+  }
+
+  /** A file that was found when its directory was last listed. */
+  private static class FileEntry {
+    /** the name of the file */
+    private final String name;
+
+    /** the tags in the name of the file */
+    private final String[] tags;
+
+    /**
+     * Construct a new FileEntry.
+     *
+     * @param name the name of the file
+     * @param tags the tags in the name of the file
+     */
+    private FileEntry(String name, String[] tags) {
+      this.name = name;
+      this.tags = tags;
+    }
+  }
+}
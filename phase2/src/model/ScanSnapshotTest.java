@@ -0,0 +1,105 @@
+package model;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ScanSnapshotTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+  private File root;
+  private File snapshotFile;
+  private File imageFile;
+  private File subFolderedImageFile;
+
+  @Before
+  public void setUp() throws Exception {
+    root = folder.newFolder("root");
+    imageFile = new File(root, "ImageFile @Tag1.jpg");
+    imageFile.createNewFile();
+    File subFolder = new File(root, "SubFolder");
+    subFolder.mkdir();
+    subFolderedImageFile = new File(subFolder, "SubFolderedImageFile @Tag2 @Tag3.png");
+    subFolderedImageFile.createNewFile();
+    snapshotFile = new File(folder.getRoot(), "root.snapshot");
+  }
+
+  @Test
+  public void walkSavesSnapshot() {
+    ScanSnapshot scanSnapshot = new ScanSnapshot(root, snapshotFile);
+    assertEquals(
+        new HashSet<>(Arrays.asList(imageFile, subFolderedImageFile)),
+        new HashSet<>(
+            scanSnapshot.walk(name -> name.endsWith(".jpg") || name.endsWith(".png"), true)));
+    scanSnapshot.save();
+    assertTrue(snapshotFile.exists());
+  }
+
+  @Test
+  public void loadedSnapshotRemembersFilesAndTags() {
+    ScanSnapshot scanSnapshot = new ScanSnapshot(root, snapshotFile);
+    scanSnapshot.walk(name -> true, true);
+    scanSnapshot.save();
+    ScanSnapshot loadedSnapshot = new ScanSnapshot(root, snapshotFile);
+    assertArrayEquals(new String[] {"Tag2", "Tag3"}, loadedSnapshot.getTags(subFolderedImageFile));
+    assertEquals(
+        new HashSet<>(Arrays.asList(imageFile, subFolderedImageFile)),
+        new HashSet<>(loadedSnapshot.walk(name -> true, true)));
+  }
+
+  @Test
+  public void walkFindsNewFiles() throws Exception {
+    ScanSnapshot scanSnapshot = new ScanSnapshot(root, snapshotFile);
+    scanSnapshot.walk(name -> true, true);
+    scanSnapshot.save();
+    File newImageFile = new File(root, "NewImageFile.jpg");
+    newImageFile.createNewFile();
+    ScanSnapshot loadedSnapshot = new ScanSnapshot(root, snapshotFile);
+    assertEquals(
+        new HashSet<>(Arrays.asList(imageFile, newImageFile)),
+        new HashSet<>(loadedSnapshot.walk(name -> true, false)));
+  }
+
+  @Test
+  public void onlyChangedDirectoriesAreListedAgain() throws Exception {
+    File subFolder = subFolderedImageFile.getParentFile();
+    File otherFolder = new File(root, "OtherFolder");
+    otherFolder.mkdir();
+    // Directories modified right before they're listed are always listed again, so age them.
+    long past = System.currentTimeMillis() - 60000;
+    for (File directory : new File[] {root, subFolder, otherFolder}) {
+      assertTrue(directory.setLastModified(past));
+    }
+    ScanSnapshot scanSnapshot = new ScanSnapshot(root, snapshotFile);
+    scanSnapshot.walk(name -> true, true);
+    scanSnapshot.save();
+    File newImageFile = new File(subFolder, "NewImageFile.jpg");
+    newImageFile.createNewFile();
+    assertTrue(subFolder.setLastModified(past + 10000));
+    // A directory whose modification time didn't change is taken from the snapshot, so a file
+    // slipped into it without changing the time isn't found.
+    new File(otherFolder, "Unlisted.jpg").createNewFile();
+    assertTrue(otherFolder.setLastModified(past));
+
+    ScanSnapshot loadedSnapshot = new ScanSnapshot(root, snapshotFile);
+    assertEquals(
+        new HashSet<>(Arrays.asList(imageFile, subFolderedImageFile, newImageFile)),
+        new HashSet<>(loadedSnapshot.walk(name -> true, true)));
+  }
+
+  @Test
+  public void rootsGetTheirOwnSnapshotFiles() throws Exception {
+    // "Aa" and "BB" have the same String.hashCode().
+    File first = ScanSnapshot.forRoot(new File(root, "Aa")).getSnapshotFile();
+    File second = ScanSnapshot.forRoot(new File(root, "BB")).getSnapshotFile();
+    assertTrue(!first.equals(second));
+  }
+}
@@ -0,0 +1,106 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A sparse index of when the entries in a log or journal segment were logged. Entries are grouped
+ * into blocks of consecutive entries, and only the position and the earliest and latest time of
+ * each block are kept, so finding the entries logged in a time range only reads the blocks that
+ * might hold some of them. Times don't need to be in order, since imported entries can be older
+ * than the ones before them.
+ */
+class SparseTimeIndex {
+
+  /** the number of entries in each block */
+  static final int BLOCK_ENTRIES = 64;
+
+  /** where each block starts */
+  private long[] starts;
+
+  /** the earliest time in each block */
+  private long[] earliest;
+
+  /** the latest time in each block */
+  private long[] latest;
+
+  /** the number of blocks */
+  private int blocks;
+
+  /** the number of entries in the last block */
+  private int inLastBlock;
+
+  /** where the last indexed entry ends */
+  private long end;
+
+  /** Construct a new, empty SparseTimeIndex. */
+  SparseTimeIndex() {
+    starts = new long[4];
+    earliest = new long[4];
+    latest = new long[4];
+  }
+
+  /**
+   * Indexes the next entry. Entries without a time are only counted as part of the block before
+   * them, since they can't be in any time range.
+   *
+   * @param time when the entry was logged, or -1 if it isn't known
+   * @param start where the entry starts
+   * @param end where the entry ends
+   */
+  synchronized void add(long time, long start, long end) {
+    this.end = end;
+    if (time < 0) {
+      return;
+    }
+    if (blocks == 0 || inLastBlock == BLOCK_ENTRIES) {
+      if (blocks == starts.length) {
+        starts = Arrays.copyOf(starts, 2 * blocks);
+        earliest = Arrays.copyOf(earliest, 2 * blocks);
+        latest = Arrays.copyOf(latest, 2 * blocks);
+      }
+      starts[blocks] = start;
+      earliest[blocks] = time;
+      latest[blocks] = time;
+      blocks++;
+      inLastBlock = 0;
+    }
+    earliest[blocks - 1] = Math.min(earliest[blocks - 1], time);
+    latest[blocks - 1] = Math.max(latest[blocks - 1], time);
+    inLastBlock++;
+  }
+
+  /**
+   * Returns where the last indexed entry ends.
+   *
+   * @return long
+   */
+  synchronized long getEnd() {
+    return end;
+  }
+
+  /**
+   * Returns the parts of the log or segment that might hold entries logged in a time range.
+   * Neighbouring blocks are merged into one part.
+   *
+   * @param from the earliest time, inclusive
+   * @param to the latest time, exclusive
+   * @return a list of the start and end of each part, in order
+   */
+  synchronized List<long[]> getRanges(long from, long to) {
+    List<long[]> ret = new ArrayList<>();
+    for (int i = 0; i < blocks; i++) {
+      if (latest[i] < from || earliest[i] >= to) {
+        continue;
+      }
+      long blockEnd = i + 1 < blocks ? starts[i + 1] : end;
+      if (!ret.isEmpty() && ret.get(ret.size() - 1)[1] == starts[i]) {
+        ret.get(ret.size() - 1)[1] = blockEnd;
+      } else {
+        ret.add(new long[] {starts[i], blockEnd});
+      }
+    }
+    return ret;
+  }
+}
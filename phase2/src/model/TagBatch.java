@@ -0,0 +1,98 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/** A plan of tags to add to and remove from many files at once. */
+public class TagBatch {
+
+  /** the files the plan is applied to */
+  private final AbsTaggableFile[] files;
+
+  /** the tags to add to every file */
+  private final Set<String> tagsToAdd;
+
+  /** the tags to remove from every file */
+  private final Set<String> tagsToRemove;
+
+  /**
+   * Construct a new TagBatch.
+   *
+   * @param files the files to apply the plan to
+   * @param tagsToAdd the String representations of the tags to add to every file
+   * @param tagsToRemove the String representations of the tags to remove from every file
+   */
+  public TagBatch(AbsTaggableFile[] files, String[] tagsToAdd, String[] tagsToRemove) {
+    this.files = files.clone();
+    this.tagsToAdd = validTags(tagsToAdd);
+    this.tagsToRemove = validTags(tagsToRemove);
+    // A tag that is both added and removed is simply removed.
+    this.tagsToAdd.removeAll(this.tagsToRemove);
+  }
+
+  /**
+   * Returns the files the plan is applied to.
+   *
+   * @return AbsTaggableFile[]
+   */
+  public AbsTaggableFile[] getFiles() {
+    return files.clone();
+  }
+
+  /**
+   * Returns the tags to add to every file.
+   *
+   * @return an unmodifiable Set of the tags
+   */
+  public Set<String> getTagsToAdd() {
+    return Collections.unmodifiableSet(tagsToAdd);
+  }
+
+  /**
+   * Returns the tags to remove from every file.
+   *
+   * @return an unmodifiable Set of the tags
+   */
+  public Set<String> getTagsToRemove() {
+    return Collections.unmodifiableSet(tagsToRemove);
+  }
+
+  /**
+   * Returns the name a file would have after the plan is applied to it.
+   *
+   * @param absTaggableFile the file to apply the plan to
+   * @return the new name of the file, without its suffix
+   */
+  String apply(AbsTaggableFile absTaggableFile) {
+    String name = AbsTaggableFile.removeTags(absTaggableFile.getName(), tagsToRemove);
+    Set<String> presentTags = new LinkedHashSet<>(Arrays.asList(absTaggableFile.getTags()));
+    presentTags.removeAll(tagsToRemove);
+    StringBuilder str = new StringBuilder(name);
+    for (String tag : tagsToAdd) {
+      if (presentTags.add(tag)) {
+        str.append(' ').append(AbsTaggableFile.TAG_MARKER).append(tag);
+      }
+    }
+    return str.toString();
+  }
+
+  /**
+   * Returns the non-empty tags in the given array.
+   *
+   * @param tags the String representations of tags, some of which may be null or empty
+   * @return a Set of the non-empty tags, in their original order
+   */
+  private static Set<String> validTags(String[] tags) {
+    Set<String> ret = new LinkedHashSet<>();
+    if (tags != null) {
+      for (String tag : tags) {
+        if (tag != null && tag.length() > 0) {
+          ret.add(tag);
+        }
+      }
+    }
+    return ret;
+  }
+}
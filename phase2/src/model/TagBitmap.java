@@ -0,0 +1,542 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * A compressed set of non-negative int ids. Ids are split into chunks of 65536 by their high 16
+ * bits; a chunk with few ids keeps them in a sorted char[], and a dense chunk switches to a 65536
+ * bit bitmap, so both sparse and dense sets stay small and intersect quickly.
+ */
+public class TagBitmap {
+  /** the most ids a chunk keeps in a sorted array before switching to a bitmap */
+  private static final int ARRAY_LIMIT = 4096;
+
+  /** the number of longs in a chunk's bitmap */
+  private static final int BITMAP_WORDS = 1024;
+
+  /** the high 16 bits of the ids in each chunk, in increasing order */
+  private int[] keys;
+
+  /** the chunk for each key */
+  private Chunk[] chunks;
+
+  /** the number of chunks in use */
+  private int size;
+
+  /** Construct a new, empty TagBitmap. */
+  public TagBitmap() {
+    keys = new int[4];
+    chunks = new Chunk[4];
+  }
+
+  /**
+   * Adds an id to the set.
+   *
+   * @param id a non-negative id
+   * @return true if the id wasn't already in the set
+   */
+  public boolean add(int id) {
+    int key = id >>> 16;
+    int i = indexOf(key);
+    if (i < 0) {
+      i = -i - 1;
+      insertChunk(i, key, new Chunk(new char[4], 0));
+    }
+    return chunks[i].add((char) id);
+  }
+
+  /**
+   * Removes an id from the set.
+   *
+   * @param id a non-negative id
+   * @return true if the id was in the set
+   */
+  public boolean remove(int id) {
+    int i = indexOf(id >>> 16);
+    if (i < 0 || !chunks[i].remove((char) id)) {
+      return false;
+    }
+    if (chunks[i].cardinality == 0) {
+      removeChunk(i);
+    }
+    return true;
+  }
+
+  /**
+   * Returns whether the id is in the set.
+   *
+   * @param id a non-negative id
+   * @return true if the id is in the set
+   */
+  public boolean contains(int id) {
+    int i = indexOf(id >>> 16);
+    return i >= 0 && chunks[i].contains((char) id);
+  }
+
+  /**
+   * Returns the number of ids in the set.
+   *
+   * @return int
+   */
+  public int getCardinality() {
+    int cardinality = 0;
+    for (int i = 0; i < size; i++) {
+      cardinality += chunks[i].cardinality;
+    }
+    return cardinality;
+  }
+
+  /**
+   * Returns whether the set is empty.
+   *
+   * @return true if there are no ids in the set
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Returns the ids in both this set and the other.
+   *
+   * @param other the set to intersect with
+   * @return a new TagBitmap of the intersection
+   */
+  public TagBitmap and(TagBitmap other) {
+    TagBitmap ret = new TagBitmap();
+    int i = 0;
+    int j = 0;
+    while (i < size && j < other.size) {
+      if (keys[i] < other.keys[j]) {
+        i++;
+      } else if (keys[i] > other.keys[j]) {
+        j++;
+      } else {
+        Chunk chunk = chunks[i].and(other.chunks[j]);
+        if (chunk.cardinality > 0) {
+          ret.insertChunk(ret.size, keys[i], chunk);
+        }
+        i++;
+        j++;
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Returns the ids in either this set or the other.
+   *
+   * @param other the set to unite with
+   * @return a new TagBitmap of the union
+   */
+  public TagBitmap or(TagBitmap other) {
+    TagBitmap ret = new TagBitmap();
+    int i = 0;
+    int j = 0;
+    while (i < size || j < other.size) {
+      if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+        ret.insertChunk(ret.size, keys[i], chunks[i].copy());
+        i++;
+      } else if (i == size || keys[i] > other.keys[j]) {
+        ret.insertChunk(ret.size, other.keys[j], other.chunks[j].copy());
+        j++;
+      } else {
+        ret.insertChunk(ret.size, keys[i], chunks[i].or(other.chunks[j]));
+        i++;
+        j++;
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Returns the ids in this set that aren't in the other.
+   *
+   * @param other the set of ids to leave out
+   * @return a new TagBitmap of the difference
+   */
+  public TagBitmap andNot(TagBitmap other) {
+    TagBitmap ret = new TagBitmap();
+    int j = 0;
+    for (int i = 0; i < size; i++) {
+      while (j < other.size && other.keys[j] < keys[i]) {
+        j++;
+      }
+      Chunk chunk =
+          j < other.size && other.keys[j] == keys[i]
+              ? chunks[i].andNot(other.chunks[j])
+              : chunks[i].copy();
+      if (chunk.cardinality > 0) {
+        ret.insertChunk(ret.size, keys[i], chunk);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Returns a copy of the set.
+   *
+   * @return a new TagBitmap with the same ids
+   */
+  public TagBitmap copy() {
+    TagBitmap ret = new TagBitmap();
+    for (int i = 0; i < size; i++) {
+      ret.insertChunk(ret.size, keys[i], chunks[i].copy());
+    }
+    return ret;
+  }
+
+  /**
+   * Returns the ids in the set.
+   *
+   * @return an int[] of the ids in increasing order
+   */
+  public int[] toArray() {
+    int[] ret = new int[getCardinality()];
+    int n = 0;
+    for (int i = 0; i < size; i++) {
+      n = chunks[i].copyTo(keys[i] << 16, ret, n);
+    }
+    return ret;
+  }
+
+  /**
+   * Returns whether o is a TagBitmap with the same ids.
+   *
+   * @param o the object passed in for comparison
+   * @return boolean
+   */
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof TagBitmap && Arrays.equals(toArray(), ((TagBitmap) o).toArray());
+  }
+
+  /**
+   * Returns a hash code of the ids in the set.
+   *
+   * @return int
+   */
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(toArray());
+  }
+
+  /**
+   * Generate a string of the ids in the set.
+   *
+   * @return String
+   */
+  @Override
+  public String toString() {
+    return Arrays.toString(toArray());
+  }
+
+  /**
+   * Returns the index of the chunk with the given key.
+   *
+   * @param key the high 16 bits of an id
+   * @return the index of the chunk, or (-(insertion point) - 1) if there isn't one
+   */
+  private int indexOf(int key) {
+    return Arrays.binarySearch(keys, 0, size, key);
+  }
+
+  /**
+   * Inserts a chunk at the given index.
+   *
+   * @param i the index to insert at
+   * @param key the high 16 bits of the ids in the chunk
+   * @param chunk the chunk
+   */
+  private void insertChunk(int i, int key, Chunk chunk) {
+    if (size == keys.length) {
+      keys = Arrays.copyOf(keys, size * 2);
+      chunks = Arrays.copyOf(chunks, size * 2);
+    }
+    System.arraycopy(keys, i, keys, i + 1, size - i);
+    System.arraycopy(chunks, i, chunks, i + 1, size - i);
+    keys[i] = key;
+    chunks[i] = chunk;
+    size++;
+  }
+
+  /**
+   * Removes the chunk at the given index.
+   *
+   * @param i the index of the chunk
+   */
+  private void removeChunk(int i) {
+    System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+    System.arraycopy(chunks, i + 1, chunks, i, size - i - 1);
+    size--;
+    chunks[size] = null;
+  }
+
+  /** The low 16 bits of the ids that share the same high 16 bits. */
+  private static final class Chunk {
+    /** the sorted low bits, used while bits is null */
+    private char[] array;
+
+    /** the bitmap of low bits, or null while the chunk is an array */
+    private long[] bits;
+
+    /** the number of ids in the chunk */
+    private int cardinality;
+
+    /**
+     * Construct a new Chunk backed by a sorted array.
+     *
+     * @param array the sorted low bits
+     * @param cardinality the number of values used in array
+     */
+    private Chunk(char[] array, int cardinality) {
+      this.array = array;
+      this.cardinality = cardinality;
+    }
+
+    /**
+     * Construct a new Chunk from a bitmap, switching to an array if it's sparse enough.
+     *
+     * @param bits the bitmap of low bits
+     * @return Chunk
+     */
+    private static Chunk fromBits(long[] bits) {
+      int cardinality = 0;
+      for (long word : bits) {
+        cardinality += Long.bitCount(word);
+      }
+      if (cardinality > ARRAY_LIMIT) {
+        Chunk chunk = new Chunk(null, cardinality);
+        chunk.bits = bits;
+        return chunk;
+      }
+      char[] array = new char[cardinality];
+      int n = 0;
+      for (int w = 0; w < BITMAP_WORDS; w++) {
+        long word = bits[w];
+        while (word != 0) {
+          array[n++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+          word &= word - 1;
+        }
+      }
+      return new Chunk(array, cardinality);
+    }
+
+    /**
+     * Returns whether the low bits are in the chunk.
+     *
+     * @param value the low 16 bits of an id
+     * @return boolean
+     */
+    private boolean contains(char value) {
+      if (bits != null) {
+        return (bits[value >>> 6] & (1L << value)) != 0;
+      }
+      return Arrays.binarySearch(array, 0, cardinality, value) >= 0;
+    }
+
+    /**
+     * Adds the low bits to the chunk, switching to a bitmap once the array is full.
+     *
+     * @param value the low 16 bits of an id
+     * @return true if value wasn't already in the chunk
+     */
+    private boolean add(char value) {
+      if (bits != null) {
+        long before = bits[value >>> 6];
+        bits[value >>> 6] |= 1L << value;
+        if (before == bits[value >>> 6]) {
+          return false;
+        }
+        cardinality++;
+        return true;
+      }
+      int i = Arrays.binarySearch(array, 0, cardinality, value);
+      if (i >= 0) {
+        return false;
+      }
+      if (cardinality == ARRAY_LIMIT) {
+        bits = toBits();
+        array = null;
+        return add(value);
+      }
+      i = -i - 1;
+      if (cardinality == array.length) {
+        array = Arrays.copyOf(array, Math.min(ARRAY_LIMIT, cardinality * 2));
+      }
+      System.arraycopy(array, i, array, i + 1, cardinality - i);
+      array[i] = value;
+      cardinality++;
+      return true;
+    }
+
+    /**
+     * Removes the low bits from the chunk, switching back to an array once it's sparse enough.
+     *
+     * @param value the low 16 bits of an id
+     * @return true if value was in the chunk
+     */
+    private boolean remove(char value) {
+      if (bits != null) {
+        long before = bits[value >>> 6];
+        bits[value >>> 6] &= ~(1L << value);
+        if (before == bits[value >>> 6]) {
+          return false;
+        }
+        cardinality--;
+        if (cardinality <= ARRAY_LIMIT) {
+          Chunk chunk = fromBits(bits);
+          array = chunk.array;
+          bits = null;
+        }
+        return true;
+      }
+      int i = Arrays.binarySearch(array, 0, cardinality, value);
+      if (i < 0) {
+        return false;
+      }
+      System.arraycopy(array, i + 1, array, i, cardinality - i - 1);
+      cardinality--;
+      return true;
+    }
+
+    /**
+     * Returns the intersection of this chunk and the other.
+     *
+     * @param other the chunk to intersect with
+     * @return a new Chunk
+     */
+    private Chunk and(Chunk other) {
+      if (bits != null && other.bits != null) {
+        long[] ret = new long[BITMAP_WORDS];
+        for (int w = 0; w < BITMAP_WORDS; w++) {
+          ret[w] = bits[w] & other.bits[w];
+        }
+        return fromBits(ret);
+      }
+      // Filter the smaller array through the other chunk.
+      Chunk small =
+          bits == null && (other.bits != null || cardinality <= other.cardinality) ? this : other;
+      Chunk large = small == this ? other : this;
+      char[] ret = new char[small.cardinality];
+      int n = 0;
+      for (int i = 0; i < small.cardinality; i++) {
+        if (large.contains(small.array[i])) {
+          ret[n++] = small.array[i];
+        }
+      }
+      return new Chunk(ret, n);
+    }
+
+    /**
+     * Returns the union of this chunk and the other.
+     *
+     * @param other the chunk to unite with
+     * @return a new Chunk
+     */
+    private Chunk or(Chunk other) {
+      if (bits == null && other.bits == null && cardinality + other.cardinality <= ARRAY_LIMIT) {
+        char[] ret = new char[cardinality + other.cardinality];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < cardinality || j < other.cardinality) {
+          if (j == other.cardinality || (i < cardinality && array[i] < other.array[j])) {
+            ret[n++] = array[i++];
+          } else if (i == cardinality || array[i] > other.array[j]) {
+            ret[n++] = other.array[j++];
+          } else {
+            ret[n++] = array[i++];
+            j++;
+          }
+        }
+        return new Chunk(ret, n);
+      }
+      long[] ret = toBits();
+      long[] otherBits = other.toBits();
+      for (int w = 0; w < BITMAP_WORDS; w++) {
+        ret[w] |= otherBits[w];
+      }
+      return fromBits(ret);
+    }
+
+    /**
+     * Returns the values in this chunk that aren't in the other.
+     *
+     * @param other the chunk of values to leave out
+     * @return a new Chunk
+     */
+    private Chunk andNot(Chunk other) {
+      if (bits == null) {
+        char[] ret = new char[cardinality];
+        int n = 0;
+        for (int i = 0; i < cardinality; i++) {
+          if (!other.contains(array[i])) {
+            ret[n++] = array[i];
+          }
+        }
+        return new Chunk(ret, n);
+      }
+      long[] ret = toBits();
+      long[] otherBits = other.toBits();
+      for (int w = 0; w < BITMAP_WORDS; w++) {
+        ret[w] &= ~otherBits[w];
+      }
+      return fromBits(ret);
+    }
+
+    /**
+     * Returns a copy of this chunk.
+     *
+     * @return a new Chunk
+     */
+    private Chunk copy() {
+      if (bits != null) {
+        Chunk chunk = new Chunk(null, cardinality);
+        chunk.bits = bits.clone();
+        return chunk;
+      }
+      return new Chunk(Arrays.copyOf(array, cardinality), cardinality);
+    }
+
+    /**
+     * Returns the chunk as a new bitmap.
+     *
+     * @return long[]
+     */
+    private long[] toBits() {
+      if (bits != null) {
+        return bits.clone();
+      }
+      long[] ret = new long[BITMAP_WORDS];
+      for (int i = 0; i < cardinality; i++) {
+        ret[array[i] >>> 6] |= 1L << array[i];
+      }
+      return ret;
+    }
+
+    /**
+     * Copies the ids in the chunk into an int[].
+     *
+     * @param high the high 16 bits of the ids, already shifted into place
+     * @param dest the int[] to copy into
+     * @param n the index in dest to start at
+     * @return the index in dest after the last copied id
+     */
+    private int copyTo(int high, int[] dest, int n) {
+      if (bits != null) {
+        for (int w = 0; w < BITMAP_WORDS; w++) {
+          long word = bits[w];
+          while (word != 0) {
+            dest[n++] = high | ((w << 6) + Long.numberOfTrailingZeros(word));
+            word &= word - 1;
+          }
+        }
+      } else {
+        for (int i = 0; i < cardinality; i++) {
+          dest[n++] = high | array[i];
+        }
+      }
+      return n;
+    }
+  }
+}
@@ -0,0 +1,137 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives every distinct tag a small int id, shared by the whole model. Each tag is kept as a single
+ * String instance, and the model can store and compare tags as ids instead of Strings. Ids are
+ * handed out in order from 0 and are never reused, so a tag keeps its id for the whole run.
+ */
+public class TagDictionary {
+  /** the dictionary shared by the whole model */
+  private static final TagDictionary INSTANCE = new TagDictionary();
+
+  /** the id of each tag */
+  private final ConcurrentHashMap<String, Integer> ids;
+
+  /** the tag of each id; replaced rather than modified when it grows, so reads need no lock */
+  private volatile String[] tags;
+
+  /** the number of ids handed out */
+  private volatile int size;
+
+  /** Construct a new, empty TagDictionary. */
+  TagDictionary() {
+    ids = new ConcurrentHashMap<>();
+    tags = new String[64];
+  }
+
+  /**
+   * Returns the dictionary shared by the whole model.
+   *
+   * @return TagDictionary
+   */
+  public static TagDictionary getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Returns the id of a tag, giving it a new one if it doesn't have one yet.
+   *
+   * @param tag the String representation of the tag
+   * @return the id of the tag
+   */
+  public int getId(String tag) {
+    Integer id = ids.get(tag);
+    if (id != null) {
+      return id;
+    }
+    synchronized (this) {
+      id = ids.get(tag);
+      if (id == null) {
+        id = size;
+        String[] newTags = tags;
+        if (id == newTags.length) {
+          newTags = Arrays.copyOf(newTags, newTags.length * 2);
+        }
+        newTags[id] = tag;
+        tags = newTags;
+        size = id + 1;
+        ids.put(tag, id);
+      }
+      return id;
+    }
+  }
+
+  /**
+   * Returns the id of a tag without giving it one.
+   *
+   * @param tag the String representation of the tag
+   * @return the id of the tag, or -1 if it doesn't have one
+   */
+  public int findId(String tag) {
+    Integer id = ids.get(tag);
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * Returns the ids of the given tags, giving new ones to the tags that don't have one.
+   *
+   * @param tags the String representations of the tags
+   * @return an int[] of the ids, in the same order as tags
+   */
+  public int[] getIds(String[] tags) {
+    int[] ret = new int[tags.length];
+    for (int i = 0; i < tags.length; i++) {
+      ret[i] = getId(tags[i]);
+    }
+    return ret;
+  }
+
+  /**
+   * Returns the tag with the given id.
+   *
+   * @param id an id handed out by this dictionary
+   * @return the single String instance of the tag
+   */
+  public String getTag(int id) {
+    if (id < 0 || id >= size) {
+      throw new IllegalArgumentException("No tag has the id " + id);
+    }
+    return tags[id];
+  }
+
+  /**
+   * Returns the tags with the given ids.
+   *
+   * @param ids ids handed out by this dictionary
+   * @return a String[] of the tags, in the same order as ids
+   */
+  public String[] getTags(int[] ids) {
+    String[] ret = new String[ids.length];
+    for (int i = 0; i < ids.length; i++) {
+      ret[i] = getTag(ids[i]);
+    }
+    return ret;
+  }
+
+  /**
+   * Returns the single String instance of a tag, adding the tag to the dictionary if needed.
+   *
+   * @param tag the String representation of the tag
+   * @return a String equal to tag that is shared by every user of the dictionary
+   */
+  public String intern(String tag) {
+    return getTag(getId(tag));
+  }
+
+  /**
+   * Returns the number of tags in the dictionary.
+   *
+   * @return int
+   */
+  public int size() {
+    return size;
+  }
+}
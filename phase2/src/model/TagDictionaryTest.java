@@ -0,0 +1,103 @@
+package model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class TagDictionaryTest {
+  private TagDictionary dictionary;
+
+  @Before
+  public void setUp() {
+    dictionary = new TagDictionary();
+  }
+
+  @Test
+  public void idsAreStableForTheSameTag() {
+    int id = dictionary.getId("beach");
+    assertEquals(id, dictionary.getId("beach"));
+    assertEquals(id, dictionary.getId(new String("beach")));
+    assertEquals(id, dictionary.findId("beach"));
+    assertEquals(-1, dictionary.findId("mountain"));
+    assertEquals(id + 1, dictionary.getId("mountain"));
+    assertEquals(2, dictionary.size());
+  }
+
+  @Test
+  public void tagsRoundTripThroughTheirIds() {
+    String[] tags = new String[] {"a", "b", "c++", "(tag)", "a"};
+    int[] ids = dictionary.getIds(tags);
+    assertArrayEquals(tags, dictionary.getTags(ids));
+    for (String tag : tags) {
+      assertEquals(tag, dictionary.getTag(dictionary.getId(tag)));
+    }
+    // Ids past the first block of tags are kept too.
+    for (int i = 0; i < 1000; i++) {
+      assertEquals("tag" + i, dictionary.getTag(dictionary.getId("tag" + i)));
+    }
+  }
+
+  @Test
+  public void internReturnsOneInstancePerTag() {
+    String tag = dictionary.intern(new String("beach"));
+    assertSame(tag, dictionary.intern(new String("beach")));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unknownIdsAreRejected() {
+    dictionary.getTag(dictionary.size());
+  }
+
+  @Test
+  public void concurrentInternsGiveOneIdPerTag() throws Exception {
+    int threads = 8;
+    int tagCount = 500;
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<String[]>> results = new ArrayList<>();
+    try {
+      for (int t = 0; t < threads; t++) {
+        Callable<String[]> task =
+            () -> {
+              start.await();
+              String[] interned = new String[tagCount];
+              for (int i = 0; i < tagCount; i++) {
+                interned[i] = dictionary.intern(new String("tag" + i));
+              }
+              return interned;
+            };
+        results.add(pool.submit(task));
+      }
+      start.countDown();
+      String[] first = results.get(0).get();
+      for (Future<String[]> result : results) {
+        String[] interned = result.get();
+        for (int i = 0; i < tagCount; i++) {
+          assertSame(first[i], interned[i]);
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+    assertEquals(tagCount, dictionary.size());
+    Set<Integer> ids = new HashSet<>();
+    for (int i = 0; i < tagCount; i++) {
+      ids.add(dictionary.findId("tag" + i));
+      assertEquals("tag" + i, dictionary.getTag(dictionary.findId("tag" + i)));
+    }
+    assertEquals(tagCount, ids.size());
+  }
+}
@@ -0,0 +1,137 @@
+package model;
+
+/** Something that happened to a tag or a file, delivered by a TagEventBus. */
+public class TagEvent {
+
+  /** The kinds of events. */
+  public enum Type {
+    /** a tag was added to the TagManager */
+    TAG_ADDED,
+    /** a tag was removed from the TagManager */
+    TAG_REMOVED,
+    /** a file was renamed in its directory */
+    FILE_RENAMED,
+    /** a file was moved to another directory */
+    FILE_MOVED
+  }
+
+  /** the kind of event */
+  private final Type type;
+
+  /** the tag that was added or removed, or null for a file event */
+  private final String tag;
+
+  /** the file that was renamed or moved, or null for a tag event */
+  private final AbsTaggableFile file;
+
+  /** the name or directory the file had before, or null for a tag event */
+  private final String oldValue;
+
+  /**
+   * Construct a new TagEvent.
+   *
+   * @param type the kind of event
+   * @param tag the tag that was added or removed, or null for a file event
+   * @param file the file that was renamed or moved, or null for a tag event
+   * @param oldValue the name or directory the file had before, or null for a tag event
+   */
+  private TagEvent(Type type, String tag, AbsTaggableFile file, String oldValue) {
+    this.type = type;
+    this.tag = tag;
+    this.file = file;
+    this.oldValue = oldValue;
+  }
+
+  /**
+   * Returns an event for a tag added to the TagManager.
+   *
+   * @param tag the String representation of the tag
+   * @return TagEvent
+   */
+  static TagEvent tagAdded(String tag) {
+    return new TagEvent(Type.TAG_ADDED, tag, null, null);
+  }
+
+  /**
+   * Returns an event for a tag removed from the TagManager.
+   *
+   * @param tag the String representation of the tag
+   * @return TagEvent
+   */
+  static TagEvent tagRemoved(String tag) {
+    return new TagEvent(Type.TAG_REMOVED, tag, null, null);
+  }
+
+  /**
+   * Returns an event for a renamed file.
+   *
+   * @param file the file, which already has its new name
+   * @param oldName the name of the file before, without its suffix
+   * @return TagEvent
+   */
+  static TagEvent fileRenamed(AbsTaggableFile file, String oldName) {
+    return new TagEvent(Type.FILE_RENAMED, null, file, oldName);
+  }
+
+  /**
+   * Returns an event for a file moved to another directory.
+   *
+   * @param file the file, which is already in its new directory
+   * @param oldDirectory the path of the directory the file was in before
+   * @return TagEvent
+   */
+  static TagEvent fileMoved(AbsTaggableFile file, String oldDirectory) {
+    return new TagEvent(Type.FILE_MOVED, null, file, oldDirectory);
+  }
+
+  /**
+   * Returns the kind of event.
+   *
+   * @return Type
+   */
+  public Type getType() {
+    return type;
+  }
+
+  /**
+   * Returns whether this event is about a file rather than a tag.
+   *
+   * @return boolean
+   */
+  public boolean isFileEvent() {
+    return file != null;
+  }
+
+  /**
+   * Returns the tag that was added or removed.
+   *
+   * @return the String representation of the tag, or null for a file event
+   */
+  public String getTag() {
+    return tag;
+  }
+
+  /**
+   * Returns the file that was renamed or moved.
+   *
+   * @return the AbsTaggableFile, or null for a tag event
+   */
+  public AbsTaggableFile getFile() {
+    return file;
+  }
+
+  /**
+   * Returns the name (for FILE_RENAMED) or directory (for FILE_MOVED) the file had before. When
+   * several events for a file are coalesced this is from the first of them.
+   *
+   * @return String, or null for a tag event
+   */
+  public String getOldValue() {
+    return oldValue;
+  }
+
+  @Override
+  public String toString() {
+    return type + " " + (isFileEvent() ? oldValue + " -> " + file : tag);
+  }
+}
@@ -0,0 +1,184 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Delivers TagEvents to its listeners on a single dispatcher thread. Events published before the
+ * dispatcher gets to them are delivered together, and coalesced: a tag that was added and then
+ * removed is only reported as removed, and a file renamed several times is reported once.
+ */
+public class TagEventBus {
+
+  /** the listeners, which stay subscribed until they unsubscribe */
+  private final List<TagEventListener> listeners;
+
+  /** the events that haven't been delivered yet, by what they are about */
+  private Map<Object, TagEvent> pending;
+
+  /** whether a delivery of the pending events is already queued */
+  private boolean scheduled;
+
+  /** runs the deliveries */
+  private final ExecutorService dispatcher;
+
+  /** the thread the dispatcher runs on, or null until it starts */
+  private volatile Thread dispatcherThread;
+
+  /** Construct a new TagEventBus with no listeners. */
+  public TagEventBus() {
+    listeners = new CopyOnWriteArrayList<>();
+    pending = new LinkedHashMap<>();
+    dispatcher =
+        Executors.newSingleThreadExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "TagEventBus");
+              thread.setDaemon(true);
+              dispatcherThread = thread;
+              return thread;
+            });
+  }
+
+  /**
+   * Subscribes a listener to every event published after this call.
+   *
+   * @param listener the listener
+   */
+  public void subscribe(TagEventListener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Stops delivering events to a listener.
+   *
+   * @param listener the listener
+   */
+  public void unsubscribe(TagEventListener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Queues an event to be delivered to every listener.
+   *
+   * @param event the event
+   */
+  public synchronized void publish(TagEvent event) {
+    queue(event);
+    if (!scheduled) {
+      scheduled = true;
+      dispatcher.execute(this::dispatch);
+    }
+  }
+
+  /**
+   * Queues a group of events to be delivered to every listener together.
+   *
+   * @param events the events
+   */
+  public synchronized void publishAll(List<TagEvent> events) {
+    if (events.isEmpty()) {
+      return;
+    }
+    for (TagEvent event : events) {
+      queue(event);
+    }
+    if (!scheduled) {
+      scheduled = true;
+      dispatcher.execute(this::dispatch);
+    }
+  }
+
+  /**
+   * Adds an event to the pending events, coalescing it with the one about the same thing.
+   *
+   * @param event the event
+   */
+  private void queue(TagEvent event) {
+    if (event.isFileEvent()) {
+      // Keep the first event, which has the file's original name or directory.
+      pending.putIfAbsent(new FileKey(event), event);
+    } else {
+      // The latest of an add and a remove of a tag is the one that counts.
+      pending.remove(event.getTag());
+      pending.put(event.getTag(), event);
+    }
+  }
+
+  /**
+   * Waits until every event published before this call has been delivered. Called from a
+   * listener, it delivers the pending events straight away.
+   */
+  public void flush() {
+    if (Thread.currentThread() == dispatcherThread) {
+      dispatch();
+      return;
+    }
+    try {
+      dispatcher.submit(this::dispatch).get();
+    } catch (InterruptedException | ExecutionException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /** Delivers the events that are still pending and stops the dispatcher thread. */
+  public void close() {
+    flush();
+    dispatcher.shutdown();
+  }
+
+  /** Delivers the pending events to every listener. */
+  private void dispatch() {
+    List<TagEvent> events;
+    synchronized (this) {
+      scheduled = false;
+      if (pending.isEmpty()) {
+        return;
+      }
+      events = new ArrayList<>(pending.values());
+      pending = new LinkedHashMap<>();
+    }
+    for (TagEventListener listener : listeners) {
+      try {
+        listener.onEvents(events);
+      } catch (RuntimeException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
+  /** What a file event is about: the kind of event and the file itself, not its current path. */
+  private static class FileKey {
+
+    /** the kind of event */
+    private final TagEvent.Type type;
+
+    /** the file */
+    private final AbsTaggableFile file;
+
+    /**
+     * Construct a new FileKey for a file event.
+     *
+     * @param event the event
+     */
+    FileKey(TagEvent event) {
+      type = event.getType();
+      file = event.getFile();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof FileKey && ((FileKey) o).type == type && ((FileKey) o).file == file;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * type.hashCode() + System.identityHashCode(file);
+    }
+  }
+}
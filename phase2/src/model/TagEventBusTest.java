@@ -0,0 +1,114 @@
+package model;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TagEventBusTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private TagEventBus eventBus;
+  private List<TagEvent> events;
+  private CountDownLatch delivering;
+  private CountDownLatch release;
+
+  @Before
+  public void setUp() throws Exception {
+    eventBus = new TagEventBus();
+    events = Collections.synchronizedList(new ArrayList<>());
+    delivering = new CountDownLatch(1);
+    release = new CountDownLatch(1);
+    eventBus.subscribe(
+        newEvents -> {
+          delivering.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          events.addAll(newEvents);
+        });
+  }
+
+  /** Keeps the dispatcher busy so the next events are queued together. */
+  private void holdDispatcher() throws Exception {
+    eventBus.publish(TagEvent.tagAdded("first"));
+    delivering.await();
+  }
+
+  @Test
+  public void tagEventsAreCoalesced() throws Exception {
+    holdDispatcher();
+    eventBus.publish(TagEvent.tagAdded("beach"));
+    eventBus.publish(TagEvent.tagAdded("cat"));
+    eventBus.publish(TagEvent.tagRemoved("beach"));
+    release.countDown();
+    eventBus.flush();
+    assertEquals(3, events.size());
+    assertEquals("cat", events.get(1).getTag());
+    assertEquals(TagEvent.Type.TAG_REMOVED, events.get(2).getType());
+    assertEquals("beach", events.get(2).getTag());
+  }
+
+  @Test
+  public void renamesOfAFileAreCoalesced() throws Exception {
+    GeneralFile generalFile = new GeneralFile(folder.newFile("file.txt"));
+    generalFile.setEventBus(eventBus);
+    holdDispatcher();
+    assertTrue(generalFile.addTag(new String[] {"a"}));
+    assertTrue(generalFile.addTag(new String[] {"b"}));
+    release.countDown();
+    eventBus.flush();
+    assertEquals(2, events.size());
+    assertEquals(TagEvent.Type.FILE_RENAMED, events.get(1).getType());
+    assertSame(generalFile, events.get(1).getFile());
+    assertEquals("file", events.get(1).getOldValue());
+    assertTrue(new File(folder.getRoot(), "file @a @b.txt").exists());
+  }
+
+  @Test
+  public void groupsOfEventsAreDeliveredTogether() throws Exception {
+    release.countDown();
+    List<List<TagEvent>> deliveries = Collections.synchronizedList(new ArrayList<>());
+    eventBus.subscribe(deliveries::add);
+    eventBus.publishAll(Arrays.asList(TagEvent.tagAdded("beach"), TagEvent.tagAdded("cat")));
+    eventBus.flush();
+    assertEquals(1, deliveries.size());
+    assertEquals(2, deliveries.get(0).size());
+    assertEquals("cat", deliveries.get(0).get(1).getTag());
+  }
+
+  @Test
+  public void pendingEventsAreDeliveredWhenClosed() throws Exception {
+    release.countDown();
+    eventBus.publish(TagEvent.tagAdded("beach"));
+    eventBus.close();
+    assertEquals(1, events.size());
+    assertEquals("beach", events.get(0).getTag());
+  }
+
+  @Test
+  public void unsubscribedListenersGetNoEvents() throws Exception {
+    release.countDown();
+    List<TagEvent> otherEvents = new ArrayList<>();
+    TagEventListener listener = otherEvents::addAll;
+    eventBus.subscribe(listener);
+    eventBus.unsubscribe(listener);
+    eventBus.publish(TagEvent.tagAdded("beach"));
+    eventBus.flush();
+    assertEquals(1, events.size());
+    assertTrue(otherEvents.isEmpty());
+  }
+}
@@ -0,0 +1,15 @@
+package model;
+
+import java.util.List;
+
+/** Receives the events published on a TagEventBus. */
+public interface TagEventListener {
+
+  /**
+   * Called on the bus's dispatcher thread with the events published since the last call, after
+   * coalescing, in the order they were first published.
+   *
+   * @param events the events, never empty
+   */
+  void onEvents(List<TagEvent> events);
+}
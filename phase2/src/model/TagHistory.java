@@ -0,0 +1,261 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Finds what was logged under a root in a time range, across every file's hidden log file and the
+ * root's Journal. Each log file gets a SparseTimeIndex the first time it is queried, which is kept
+ * and only extended as the log file grows, so later queries only read the blocks of the logs that
+ * overlap the range instead of every log file. The tree under the root is only walked for log
+ * files on the first query; after that Log tells every open TagHistory when it creates, renames,
+ * moves or deletes a log file. Log files made by other programs since are found after a rescan. A
+ * TagHistory is owned by whoever constructs it, such as the TaggableFileManager of its root, which
+ * closes it when it's done with it.
+ */
+public class TagHistory {
+
+  /** every TagHistory that isn't closed, to be told about changed log files */
+  private static final Set<TagHistory> open =
+      Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+  /** the directory whose history is queried */
+  private final File root;
+
+  /** the index of each hidden log file under the root, by the log file */
+  private final Map<File, LogIndex> logIndexes;
+
+  /** the absolute paths of the hidden log files under the root, or null until the first query */
+  private Set<File> logFiles;
+
+  /**
+   * Construct a TagHistory of a root.
+   *
+   * @param root the directory whose history is queried
+   */
+  TagHistory(File root) {
+    this.root = root.getAbsoluteFile();
+    logIndexes = new HashMap<>();
+    open.add(this);
+  }
+
+  /**
+   * Tells every TagHistory that a hidden log file was created, renamed, moved or deleted, so
+   * queries find it without walking the tree again.
+   *
+   * @param oldLog the log file before the change, or null if it was just created
+   * @param newLog the log file after the change, or null if it was deleted
+   */
+  static void logFileChanged(File oldLog, File newLog) {
+    List<TagHistory> tagHistories;
+    synchronized (open) {
+      tagHistories = new ArrayList<>(open);
+    }
+    for (TagHistory history : tagHistories) {
+      history.update(
+          oldLog == null ? null : oldLog.getAbsoluteFile(),
+          newLog == null ? null : newLog.getAbsoluteFile());
+    }
+  }
+
+  /**
+   * Updates the known log files after one was created, renamed, moved or deleted. The index of a
+   * renamed or moved log file is kept, since its lines didn't change.
+   *
+   * @param oldLog the absolute path of the log file before the change, or null
+   * @param newLog the absolute path of the log file after the change, or null
+   */
+  private synchronized void update(File oldLog, File newLog) {
+    if (logFiles == null) {
+      // The tree hasn't been walked yet, so it will be found then.
+      return;
+    }
+    LogIndex logIndex = null;
+    if (oldLog != null) {
+      logFiles.remove(oldLog);
+      logIndex = logIndexes.remove(oldLog);
+    }
+    if (newLog != null && newLog.toPath().startsWith(root.toPath())) {
+      logFiles.add(newLog);
+      if (logIndex != null) {
+        logIndexes.put(newLog, logIndex);
+      }
+    }
+  }
+
+  /**
+   * Stops being told about changed log files and forgets the indexes of the log files. It can't be
+   * used after it's closed.
+   */
+  public synchronized void close() {
+    open.remove(this);
+    logFiles = null;
+    logIndexes.clear();
+  }
+
+  /** Forgets the known log files, so the next query walks the tree under the root again. */
+  public synchronized void rescan() {
+    logFiles = null;
+  }
+
+  /**
+   * Returns the directory whose history is queried.
+   *
+   * @return File
+   */
+  public File getRoot() {
+    return root;
+  }
+
+  /**
+   * Returns the entries logged in a time range for every file under the root. The log files are
+   * indexed before this returns, but their entries are only read as the stream is consumed. The
+   * entries of each log file are in the order they were logged, but entries of different files
+   * aren't in any order.
+   *
+   * @param from the earliest time, inclusive, in milliseconds since the epoch
+   * @param to the latest time, exclusive, in milliseconds since the epoch
+   * @return a Stream of the entries, which throws UncheckedIOException if a log can't be read
+   * @throws IOException if the tree under the root can't be walked or a log can't be indexed
+   */
+  public Stream<HistoryEntry> getEntriesBetween(long from, long to) throws IOException {
+    List<Stream<HistoryEntry>> parts = new ArrayList<>();
+    synchronized (this) {
+      if (logFiles == null) {
+        logFiles = new HashSet<>();
+        logIndexes.clear();
+        for (Path path : JournalMigration.findLogFiles(root)) {
+          logFiles.add(path.toFile().getAbsoluteFile());
+        }
+      }
+      Iterator<File> iterator = logFiles.iterator();
+      while (iterator.hasNext()) {
+        File logFile = iterator.next();
+        LogIndex logIndex = index(logFile, logIndexes.get(logFile));
+        if (logIndex == null) {
+          // Deleted by something other than Log.
+          iterator.remove();
+          logIndexes.remove(logFile);
+          continue;
+        }
+        logIndexes.put(logFile, logIndex);
+        File file = JournalMigration.getLoggedFile(logFile.toPath());
+        List<long[]> ranges = logIndex.index.getRanges(from, to);
+        if (!ranges.isEmpty()) {
+          parts.add(ranges.stream().flatMap(range -> read(logFile, file, range, from, to)));
+        }
+      }
+    }
+    if (new File(root, Journal.DIRECTORY).isDirectory()) {
+      parts.add(Journal.forRoot(root).getEntriesBetween(from, to));
+    }
+    return parts.stream().flatMap(part -> part);
+  }
+
+  /**
+   * Returns the index of a log file as it is now, only indexing the lines appended since it was
+   * last indexed if it was only appended to.
+   *
+   * @param logFile the log file
+   * @param logIndex the index of the log file when it was last indexed, or null
+   * @return LogIndex, or null if the log file doesn't exist any more
+   * @throws IOException if the log file can't be read
+   */
+  private static LogIndex index(File logFile, LogIndex logIndex) throws IOException {
+    long length = logFile.length();
+    long lastModified = logFile.lastModified();
+    if (logIndex != null && logIndex.length == length && logIndex.lastModified == lastModified) {
+      return logIndex;
+    }
+    if (lastModified == 0 && !logFile.exists()) {
+      return null;
+    }
+    if (logIndex == null || !logIndex.endsInNewline || logIndex.length > length) {
+      logIndex = new LogIndex();
+    }
+    byte[] bytes = new byte[(int) (length - logIndex.length)];
+    try (RandomAccessFile in = new RandomAccessFile(logFile, "r")) {
+      in.seek(logIndex.length);
+      in.readFully(bytes);
+    }
+    int lineStart = 0;
+    for (int i = 0; i <= bytes.length; i++) {
+      if (i == bytes.length || bytes[i] == '\n' || bytes[i] == '\r') {
+        if (i > lineStart) {
+          LogEntry entry =
+              LogEntryFormat.parse(
+                  new String(bytes, lineStart, i - lineStart, Charset.defaultCharset()));
+          long time = entry == null ? -1 : entry.getTime();
+          logIndex.index.add(time, logIndex.length + lineStart, logIndex.length + i);
+        }
+        lineStart = i + 1;
+      }
+    }
+    if (bytes.length > 0) {
+      logIndex.endsInNewline = bytes[bytes.length - 1] == '\n';
+    }
+    logIndex.length = length;
+    logIndex.lastModified = lastModified;
+    return logIndex;
+  }
+
+  /**
+   * Reads the entries logged in a time range from part of a log file.
+   *
+   * @param logFile the log file
+   * @param file the file the log is for
+   * @param range the start and end of the part
+   * @param from the earliest time, inclusive
+   * @param to the latest time, exclusive
+   * @return a Stream of the entries in the range
+   */
+  private static Stream<HistoryEntry> read(
+      File logFile, File file, long[] range, long from, long to) {
+    byte[] bytes = new byte[(int) (range[1] - range[0])];
+    try (RandomAccessFile in = new RandomAccessFile(logFile, "r")) {
+      in.seek(range[0]);
+      in.readFully(bytes);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    List<HistoryEntry> ret = new ArrayList<>();
+    String[] lines = new String(bytes, Charset.defaultCharset()).split("[\r\n]+");
+    for (String line : lines) {
+      LogEntry entry = LogEntryFormat.parse(line);
+      if (entry != null && entry.getTime() >= from && entry.getTime() < to) {
+        ret.add(new HistoryEntry(file, entry.getFirst(), entry.getSecond(), entry.getTime()));
+      }
+    }
+    return ret.stream();
+  }
+
+  /** The SparseTimeIndex of a log file, and the state of the log file when it was indexed. */
+  private static class LogIndex {
+
+    /** when the lines of the log file were logged */
+    private final SparseTimeIndex index = new SparseTimeIndex();
+
+    /** the length of the log file when it was indexed */
+    private long length;
+
+    /** when the log file was last modified when it was indexed */
+    private long lastModified;
+
+    /** whether the log file ended with a newline, so appended lines start after it */
+    private boolean endsInNewline = true;
+  }
+}
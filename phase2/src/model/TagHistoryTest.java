@@ -0,0 +1,121 @@
+package model;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TagHistoryTest {
+  private static final long START = 1500000000000L;
+  private static final long MINUTE = 60000;
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+  private TagHistory history;
+
+  @Before
+  public void setUp() throws Exception {
+    history = new TagHistory(folder.getRoot());
+  }
+
+  @After
+  public void tearDown() {
+    history.close();
+  }
+
+  private void log(File logFile, int from, int to) throws Exception {
+    try (FileOutputStream out = new FileOutputStream(logFile, true)) {
+      for (int i = from; i < to; i++) {
+        out.write(LogEntryFormat.format("old" + i, "new" + i, START + i * MINUTE));
+      }
+    }
+  }
+
+  private List<String> query(long from, long to) throws Exception {
+    return history
+        .getEntriesBetween(from, to)
+        .sorted(Comparator.comparingLong(LogEntry::getTime))
+        .map(entry -> entry.getFile().getName() + ":" + entry.getSecond())
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  public void testLogFilesAreQueriedByTime() throws Exception {
+    log(new File(folder.getRoot(), ".a.log"), 0, 200);
+    File sub = folder.newFolder("sub");
+    log(new File(sub, ".b.log"), 1000, 1010);
+    List<String> expected = new ArrayList<>();
+    for (int i = 150; i < 160; i++) {
+      expected.add("a:new" + i);
+    }
+    assertEquals(expected, query(START + 150 * MINUTE, START + 160 * MINUTE));
+    assertEquals(
+        Arrays.asList("b:new1000", "b:new1001"),
+        query(START + 1000 * MINUTE, START + 1002 * MINUTE));
+    assertEquals(new ArrayList<String>(), query(START + 500 * MINUTE, START + 600 * MINUTE));
+  }
+
+  @Test
+  public void testAppendedLinesAreFound() throws Exception {
+    File logFile = new File(folder.getRoot(), ".a.log");
+    log(logFile, 0, 100);
+    assertEquals(1, query(START + 99 * MINUTE, START + 101 * MINUTE).size());
+    log(logFile, 100, 130);
+    assertEquals(
+        Arrays.asList("a:new99", "a:new100"), query(START + 99 * MINUTE, START + 101 * MINUTE));
+  }
+
+  @Test
+  public void testLogsWrittenThroughLogAreFoundWithoutRescanning() throws Exception {
+    log(new File(folder.getRoot(), ".a.log"), 0, 10);
+    assertEquals(10, query(START, START + 10 * MINUTE).size());
+    Log log = new Log(new File(folder.getRoot(), "b"));
+    log.updateLog("old", "new");
+    assertEquals(Arrays.asList("b:new"), query(START + 10 * MINUTE, Long.MAX_VALUE));
+    File sub = folder.newFolder("sub");
+    assertTrue(log.moveFile(sub.getPath()));
+    List<HistoryEntry> moved =
+        history.getEntriesBetween(START + 10 * MINUTE, Long.MAX_VALUE).collect(Collectors.toList());
+    assertEquals(1, moved.size());
+    assertEquals(new File(sub, "b").getAbsoluteFile(), moved.get(0).getFile());
+  }
+
+  @Test
+  public void testLogsMadeElsewhereAreFoundAfterARescan() throws Exception {
+    File logFile = new File(folder.getRoot(), ".a.log");
+    log(logFile, 0, 10);
+    assertEquals(10, query(START, START + 10 * MINUTE).size());
+    log(new File(folder.getRoot(), ".b.log"), 0, 10);
+    assertTrue(logFile.delete());
+    assertEquals(new ArrayList<String>(), query(START, START + 10 * MINUTE));
+    history.rescan();
+    assertEquals(10, query(START, START + 10 * MINUTE).size());
+  }
+
+  @Test
+  public void testJournaledEntriesAreFoundByLatestPath() throws Exception {
+    Journal journal = Journal.forRoot(folder.getRoot());
+    File file = new File(folder.getRoot(), "file");
+    List<LogEntry> entries = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      entries.add(new LogEntry("old" + i, "new" + i, START + i * MINUTE));
+    }
+    journal.importEntries(file, entries);
+    journal.append(file, "old", "new", START + 200 * MINUTE, new File(folder.getRoot(), "moved"));
+    assertEquals(
+        Arrays.asList("moved:new10", "moved:new11"),
+        query(START + 10 * MINUTE, START + 12 * MINUTE));
+    assertEquals(Arrays.asList("moved:new"), query(START + 150 * MINUTE, START + 250 * MINUTE));
+  }
+}
@@ -0,0 +1,298 @@
+package model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An inverted index from each tag to the files that have it. Every indexed file is given a small
+ * int id, and each tag (by its id in the TagDictionary) maps to a TagBitmap of the ids of its
+ * files, so finding and intersecting the files of tags doesn't need to parse any file names. The
+ * index listens to the TagEventBus and is updated whenever one of its files is renamed or moved.
+ */
+public class TagIndex implements TagEventListener {
+
+  /** the ids of the files that have each tag, by tag id, or null if no file has the tag */
+  private final List<TagBitmap> postings;
+
+  /** the file with each id, or null if the id is free */
+  private final List<AbsTaggableFile> files;
+
+  /** the sorted ids of the tags each file had when it was last indexed, by id */
+  private final List<int[]> indexedTags;
+
+  /** the id of each indexed file; files are keyed by identity since their hash changes on rename */
+  private final Map<AbsTaggableFile, Integer> ids;
+
+  /** the ids of files that were removed, to be reused */
+  private final Deque<Integer> freeIds;
+
+  /** the trie whose usage counts are kept equal to the number of files with each tag, or null */
+  private TagTrie tagTrie;
+
+  /** Construct a new, empty TagIndex. */
+  public TagIndex() {
+    postings = new ArrayList<>();
+    files = new ArrayList<>();
+    indexedTags = new ArrayList<>();
+    ids = new IdentityHashMap<>();
+    freeIds = new ArrayDeque<>();
+  }
+
+  /**
+   * Keeps the usage counts of the tags in the given trie equal to the number of indexed files with
+   * each tag. Tags that aren't in the trie are left out of it.
+   *
+   * @param tagTrie the trie to keep up to date
+   */
+  public synchronized void setTagTrie(TagTrie tagTrie) {
+    this.tagTrie = tagTrie;
+    for (int tagId = 0; tagId < postings.size(); tagId++) {
+      if (postings.get(tagId) != null) {
+        updateUsage(tagId, postings.get(tagId).getCardinality());
+      }
+    }
+  }
+
+  /**
+   * Adds a file to the index, if it isn't already indexed.
+   *
+   * @param absTaggableFile the file to index
+   */
+  public synchronized void add(AbsTaggableFile absTaggableFile) {
+    if (ids.containsKey(absTaggableFile)) {
+      return;
+    }
+    int id;
+    if (freeIds.isEmpty()) {
+      id = files.size();
+      files.add(absTaggableFile);
+      indexedTags.add(new int[0]);
+    } else {
+      id = freeIds.pop();
+      files.set(id, absTaggableFile);
+    }
+    ids.put(absTaggableFile, id);
+    reindex(id, absTaggableFile.getTagIds());
+  }
+
+  /**
+   * Removes a file from the index.
+   *
+   * @param absTaggableFile the file to remove
+   */
+  public synchronized void remove(AbsTaggableFile absTaggableFile) {
+    Integer id = ids.remove(absTaggableFile);
+    if (id == null) {
+      return;
+    }
+    reindex(id, new int[0]);
+    files.set(id, null);
+    freeIds.push(id);
+  }
+
+  /**
+   * Removes every indexed file that isn't in the given collection.
+   *
+   * @param toKeep the files to keep in the index
+   */
+  public synchronized void retainAll(Collection<AbsTaggableFile> toKeep) {
+    Set<AbsTaggableFile> keep = Collections.newSetFromMap(new IdentityHashMap<>());
+    keep.addAll(toKeep);
+    for (AbsTaggableFile absTaggableFile : new ArrayList<>(ids.keySet())) {
+      if (!keep.contains(absTaggableFile)) {
+        remove(absTaggableFile);
+      }
+    }
+  }
+
+  /**
+   * Updates the index with the current tags of a file.
+   *
+   * @param absTaggableFile the file whose tags might have changed
+   */
+  public synchronized void update(AbsTaggableFile absTaggableFile) {
+    Integer id = ids.get(absTaggableFile);
+    if (id != null) {
+      reindex(id, absTaggableFile.getTagIds());
+    }
+  }
+
+  /**
+   * Updates the index for the files that were renamed or moved.
+   *
+   * @param events the events from the TagEventBus
+   */
+  @Override
+  public void onEvents(List<TagEvent> events) {
+    for (TagEvent event : events) {
+      if (event.isFileEvent()) {
+        update(event.getFile());
+      }
+    }
+  }
+
+  /**
+   * Returns the ids of the files with the given tag.
+   *
+   * @param tag the String representation of a tag
+   * @return a TagBitmap of the ids, which may be empty
+   */
+  public synchronized TagBitmap getFileIds(String tag) {
+    TagBitmap fileIds = getPosting(TagDictionary.getInstance().findId(tag));
+    return fileIds == null ? new TagBitmap() : fileIds.copy();
+  }
+
+  /**
+   * Returns the number of files with the given tag.
+   *
+   * @param tag the String representation of a tag
+   * @return int
+   */
+  public synchronized int getFileCount(String tag) {
+    TagBitmap fileIds = getPosting(TagDictionary.getInstance().findId(tag));
+    return fileIds == null ? 0 : fileIds.getCardinality();
+  }
+
+  /**
+   * Returns the ids of all the indexed files.
+   *
+   * @return a TagBitmap of the ids
+   */
+  public synchronized TagBitmap getAllFileIds() {
+    TagBitmap all = new TagBitmap();
+    for (int id : ids.values()) {
+      all.add(id);
+    }
+    return all;
+  }
+
+  /**
+   * Returns the files with the given ids.
+   *
+   * @param fileIds the ids of indexed files
+   * @return a AbsTaggableFile[] of the files, in id order
+   */
+  public synchronized AbsTaggableFile[] getFiles(TagBitmap fileIds) {
+    List<AbsTaggableFile> ret = new ArrayList<>(fileIds.getCardinality());
+    for (int id : fileIds.toArray()) {
+      if (id < files.size() && files.get(id) != null) {
+        ret.add(files.get(id));
+      }
+    }
+    return ret.toArray(new AbsTaggableFile[ret.size()]);
+  }
+
+  /**
+   * Returns the files that have at least one of the given tags.
+   *
+   * @param tags the String representations of the tags
+   * @return a AbsTaggableFile[] of the files that have any of the tags
+   */
+  public synchronized AbsTaggableFile[] getFilesWithAnyTag(String[] tags) {
+    TagBitmap fileIds = new TagBitmap();
+    for (String tag : tags) {
+      if (tag == null) {
+        continue;
+      }
+      TagBitmap tagFileIds = getPosting(TagDictionary.getInstance().findId(tag));
+      if (tagFileIds != null) {
+        fileIds = fileIds.or(tagFileIds);
+      }
+    }
+    return getFiles(fileIds);
+  }
+
+  /**
+   * Returns the files that have all of the given tags. The tags' files are intersected starting
+   * from the rarest tag, so the intermediate sets stay as small as possible.
+   *
+   * @param tags the String representations of the tags
+   * @return a AbsTaggableFile[] of the files that have every tag
+   */
+  public synchronized AbsTaggableFile[] getFilesWithAllTags(String[] tags) {
+    if (tags.length == 0) {
+      return new AbsTaggableFile[0];
+    }
+    String[] byRarity = tags.clone();
+    Arrays.sort(byRarity, Comparator.comparingInt(this::getFileCount));
+    TagBitmap fileIds = getFileIds(byRarity[0]);
+    for (int i = 1; i < byRarity.length && !fileIds.isEmpty(); i++) {
+      TagBitmap tagFileIds = getPosting(TagDictionary.getInstance().findId(byRarity[i]));
+      fileIds = tagFileIds == null ? new TagBitmap() : fileIds.and(tagFileIds);
+    }
+    return getFiles(fileIds);
+  }
+
+  /**
+   * Returns the ids of the files with the tag with the given id.
+   *
+   * @param tagId the id of the tag in the TagDictionary, or -1
+   * @return TagBitmap, or null if no file has the tag
+   */
+  private TagBitmap getPosting(int tagId) {
+    return tagId >= 0 && tagId < postings.size() ? postings.get(tagId) : null;
+  }
+
+  /**
+   * Moves a file from the postings of the tags it had to the postings of the tags it has now.
+   *
+   * @param id the id of the file
+   * @param tagIds the ids of the tags the file has now
+   */
+  private void reindex(int id, int[] tagIds) {
+    int[] oldTagIds = indexedTags.get(id);
+    int[] newTagIds = Arrays.stream(tagIds).sorted().distinct().toArray();
+    // Both are sorted, so walk them together to find the tags that were removed and added.
+    int i = 0;
+    int j = 0;
+    while (i < oldTagIds.length || j < newTagIds.length) {
+      if (j == newTagIds.length || (i < oldTagIds.length && oldTagIds[i] < newTagIds[j])) {
+        TagBitmap fileIds = postings.get(oldTagIds[i]);
+        if (fileIds != null && fileIds.remove(id)) {
+          if (fileIds.isEmpty()) {
+            postings.set(oldTagIds[i], null);
+          }
+          updateUsage(oldTagIds[i], fileIds.getCardinality());
+        }
+        i++;
+      } else if (i == oldTagIds.length || oldTagIds[i] > newTagIds[j]) {
+        while (postings.size() <= newTagIds[j]) {
+          postings.add(null);
+        }
+        if (postings.get(newTagIds[j]) == null) {
+          postings.set(newTagIds[j], new TagBitmap());
+        }
+        TagBitmap fileIds = postings.get(newTagIds[j]);
+        if (fileIds.add(id)) {
+          updateUsage(newTagIds[j], fileIds.getCardinality());
+        }
+        j++;
+      } else {
+        i++;
+        j++;
+      }
+    }
+    indexedTags.set(id, newTagIds);
+  }
+
+  /**
+   * Passes a tag's new number of files on to the trie, if there is one.
+   *
+   * @param tagId the id of the tag
+   * @param count the number of files with the tag
+   */
+  private void updateUsage(int tagId, int count) {
+    if (tagTrie != null) {
+      tagTrie.setCountIfPresent(TagDictionary.getInstance().getTag(tagId), count);
+    }
+  }
+}
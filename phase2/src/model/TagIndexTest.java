@@ -0,0 +1,87 @@
+package model;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+
+public class TagIndexTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+  private TagIndex tagIndex;
+  private GeneralFile beach;
+  private GeneralFile beachSunset;
+  private GeneralFile sunset;
+
+  @Before
+  public void setUp() throws Exception {
+    tagIndex = new TagIndex();
+    beach = new GeneralFile(folder.newFile("a @beach"));
+    beachSunset = new GeneralFile(folder.newFile("b @beach @sunset"));
+    sunset = new GeneralFile(folder.newFile("c @sunset"));
+    tagIndex.add(beach);
+    tagIndex.add(beachSunset);
+    tagIndex.add(sunset);
+  }
+
+  @Test
+  public void getFileCount() throws Exception {
+    assertEquals(2, tagIndex.getFileCount("beach"));
+    assertEquals(0, tagIndex.getFileCount("mountain"));
+  }
+
+  @Test
+  public void getFilesWithAllTags() throws Exception {
+    Assert.assertArrayEquals(
+        new AbsTaggableFile[] {beachSunset},
+        tagIndex.getFilesWithAllTags(new String[] {"sunset", "beach"}));
+    Assert.assertArrayEquals(
+        new AbsTaggableFile[0], tagIndex.getFilesWithAllTags(new String[] {"beach", "mountain"}));
+  }
+
+  @Test
+  public void indexFollowsRenames() throws Exception {
+    TagEventBus eventBus = new TagEventBus();
+    eventBus.subscribe(tagIndex);
+    beach.setEventBus(eventBus);
+    sunset.setEventBus(eventBus);
+    beach.addTag(new String[] {"sunset"});
+    sunset.removeTag(new String[] {"sunset"});
+    eventBus.flush();
+    Assert.assertArrayEquals(
+        new AbsTaggableFile[] {beach, beachSunset},
+        tagIndex.getFilesWithAllTags(new String[] {"sunset"}));
+  }
+
+  @Test
+  public void removedFilesLeaveTheIndex() throws Exception {
+    tagIndex.remove(beachSunset);
+    Assert.assertArrayEquals(
+        new AbsTaggableFile[] {beach}, tagIndex.getFilesWithAllTags(new String[] {"beach"}));
+  }
+
+  @Test
+  public void bitmapSetOperations() throws Exception {
+    TagBitmap evens = new TagBitmap();
+    TagBitmap threes = new TagBitmap();
+    // Enough ids for the first chunk to switch to a bitmap, plus some in a second chunk.
+    for (int id = 0; id < 70000; id++) {
+      if (id % 2 == 0) {
+        evens.add(id);
+      }
+      if (id % 3 == 0) {
+        threes.add(id);
+      }
+    }
+    assertEquals(35000, evens.getCardinality());
+    assertEquals(11667, evens.and(threes).getCardinality());
+    assertEquals(46667, evens.or(threes).getCardinality());
+    assertEquals(23333, evens.andNot(threes).getCardinality());
+    for (int id = 0; id < 70000; id += 2) {
+      evens.remove(id);
+    }
+    Assert.assertTrue(evens.isEmpty());
+  }
+}
@@ -1,38 +1,49 @@
 package model;
 
 import java.util.*;
+import java.util.function.ToIntFunction;
 
 /** manages a collection of tags. */
-public class TagManager extends Observable implements Observer, Taggable {
+public class TagManager implements Taggable, TagEventListener {
   private static final String LOG_FILE_NAME = "TagManager";
-  /** A set of tags. */
-  private Set<String> tags;
+  /** the first column of a log line recording the tags that were added */
+  static final String ADD_RECORD = "ADD";
+  /** the first column of a log line recording the tags that were removed */
+  static final String REMOVE_RECORD = "REMOVE";
+  /** the first column of a log line recording every existing tag */
+  static final String CHECKPOINT_RECORD = "CHECKPOINT";
+  /** the most ADD and REMOVE records logged between CHECKPOINT records */
+  static final int CHECKPOINT_INTERVAL = 100;
+  /** A set of the ids of the tags in the TagDictionary. */
+  private BitSet tags;
   /** A Log file */
   private Log log;
 
-  /** A String Array of erased tags */
-  private String[] lastErasedTags;
+  /** the tags arranged for prefix completion, ranked by how many files use them */
+  private TagTrie tagTrie;
+
+  /** counts how many files use a tag */
+  private ToIntFunction<String> usageCounter;
+
+  /** where added and removed tags are published, or null if nothing listens */
+  private TagEventBus eventBus;
+
+  /** the number of ADD and REMOVE records logged since the last CHECKPOINT record */
+  private int deltasSinceCheckpoint;
 
   /** Construct a new TagManager with no existing tag. */
   public TagManager() {
-    lastErasedTags = new String[0];
-    tags = new HashSet<>();
+    tags = new BitSet();
+    tagTrie = new TagTrie();
+    usageCounter = tag -> 0;
     log = new Log(".", LOG_FILE_NAME);
-    // Get the tags of the previous session of the program.
-    String[] column1 = log.getColumn(1);
-    String[] tagSet = new String[0];
-    if (column1.length > 0) {
-      tagSet =
-          (column1[column1.length - 1].replaceFirst("\\[", "").replaceFirst("]", "").split(","));
-    }
-    for (String s : tagSet) {
-      s = s.replaceFirst("\\[", "");
-      s = s.replaceFirst("]", "");
-      s = s.trim();
-      if (s.length() > 0) {
-        tags.add(s);
-      }
+    // Get the tags of the previous session of the program from the log since its last checkpoint.
+    List<String> lines = log.getLinesSince(TagManager::isCheckpoint);
+    for (String s : replay(lines)) {
+      tags.set(TagDictionary.getInstance().getId(s));
+      tagTrie.add(s);
     }
+    deltasSinceCheckpoint = lines.isEmpty() ? CHECKPOINT_INTERVAL : lines.size() - 1;
   }
 
   /**
@@ -41,7 +52,13 @@ public class TagManager extends Observable implements Observer, Taggable {
    * @param tags a list of string representations for existing tags.
    */
   public TagManager(String[] tags) {
-    this.tags = new HashSet<>(Arrays.asList(tags));
+    this.tags = new BitSet();
+    tagTrie = new TagTrie();
+    usageCounter = tag -> 0;
+    for (String tag : tags) {
+      this.tags.set(TagDictionary.getInstance().getId(tag));
+      tagTrie.add(tag);
+    }
   }
 
   /**
@@ -50,17 +67,23 @@ public class TagManager extends Observable implements Observer, Taggable {
    * @param newTags the Array of the string representations for new Tags to be added
    * @return a boolean indicating whether the adding of this tag succeeded
    */
-  public boolean addTag(String[] newTags) throws Exception {
-    Set<String> oldSet = new HashSet<>(tags);
+  public synchronized boolean addTag(String[] newTags) throws Exception {
+    List<String> added = new ArrayList<>();
     boolean success = false;
     for (String tag : newTags) {
-      success = tags.add(tag);
-    }
-    if (success) {
-      setChanged();
-      notifyObservers();
-      log.updateLog(oldSet.toString(), tags.toString());
+      if (tag == null) {
+        continue;
+      }
+      int tagId = TagDictionary.getInstance().getId(tag);
+      success = !tags.get(tagId);
+      tags.set(tagId);
+      if (success) {
+        added.add(tag);
+        tagTrie.put(tag, usageCounter.applyAsInt(tag));
+        publish(TagEvent.tagAdded(tag));
+      }
     }
+    logDelta(ADD_RECORD, added);
     return success;
   }
 
@@ -70,18 +93,24 @@ public class TagManager extends Observable implements Observer, Taggable {
    * @param tags the Array of string representations for Tags to be removed
    * @return a boolean indicating whether the removal of this tag succeeded
    */
-  public boolean removeTag(String[] tags) throws Exception {
-    Set<String> oldSet = new HashSet<>(this.tags);
+  public synchronized boolean removeTag(String[] tags) throws Exception {
+    List<String> removed = new ArrayList<>();
     boolean success = false;
     for (String tag : tags) {
-      success = this.tags.remove(tag);
-    }
-    if (success) {
-      lastErasedTags = tags.clone();
-      setChanged();
-      notifyObservers();
-      log.updateLog(oldSet.toString(), this.tags.toString());
+      int tagId = tag == null ? -1 : TagDictionary.getInstance().findId(tag);
+      success = tagId >= 0 && this.tags.get(tagId);
+      if (success) {
+        removed.add(tag);
+        publish(TagEvent.tagRemoved(tag));
+      }
+      if (tagId >= 0) {
+        this.tags.clear(tagId);
+      }
+      if (tag != null) {
+        tagTrie.remove(tag);
+      }
     }
+    logDelta(REMOVE_RECORD, removed);
     return success;
   }
 
@@ -90,32 +119,202 @@ public class TagManager extends Observable implements Observer, Taggable {
    *
    * @return a String[] of the existing tags
    */
-  public String[] getTags() {
-    return tags.toArray(new String[tags.size()]);
+  public synchronized String[] getTags() {
+    TagDictionary dictionary = TagDictionary.getInstance();
+    String[] ret = new String[tags.cardinality()];
+    int i = 0;
+    for (int tagId = tags.nextSetBit(0); tagId >= 0; tagId = tags.nextSetBit(tagId + 1)) {
+      ret[i++] = dictionary.getTag(tagId);
+    }
+    return ret;
   }
 
   /**
-   * Update the tagManager with new tags.
+   * Logs the tags that were added or removed, and every existing tag once enough changes have
+   * been logged since the last checkpoint, so the log grows with the changes and not the number
+   * of tags.
    *
-   * @param o the observable object that updates the observer TagManager when new Tag is added
-   * @param arg pass in argument
+   * @param record ADD_RECORD or REMOVE_RECORD
+   * @param changed the tags that were added or removed
+   * @throws Exception if the log can't be written
    */
-  @Override
-  public void update(Observable o, Object arg) {
-    try {
-      addTag(((AbsTaggableFile) o).getTags());
-    } catch (Exception e) {
-      e.printStackTrace();
+  private void logDelta(String record, List<String> changed) throws Exception {
+    if (changed.isEmpty() || log == null) {
+      return;
+    }
+    if (deltasSinceCheckpoint >= CHECKPOINT_INTERVAL) {
+      log.updateLog(CHECKPOINT_RECORD, formatTags(getTags()));
+      deltasSinceCheckpoint = 0;
+    }
+    log.updateLog(record, formatTags(changed.toArray(new String[changed.size()])));
+    deltasSinceCheckpoint++;
+  }
+
+  /**
+   * Returns whether a log line has every tag that existed when it was logged: a CHECKPOINT record,
+   * or a line from before delta records, whose second column was the whole set of tags.
+   *
+   * @param line the log line
+   * @return boolean
+   */
+  static boolean isCheckpoint(String line) {
+    return !line.startsWith(ADD_RECORD + LogEntryFormat.SEPARATOR)
+        && !line.startsWith(REMOVE_RECORD + LogEntryFormat.SEPARATOR);
+  }
+
+  /**
+   * Rebuilds the set of tags from log lines, starting from a checkpoint.
+   *
+   * @param lines the lines of the log since the last checkpoint, in the order they were logged
+   * @return the tags, in the order they were first added
+   */
+  static Set<String> replay(List<String> lines) {
+    Set<String> ret = new LinkedHashSet<>();
+    for (String line : lines) {
+      String[] columns = line.split(LogEntryFormat.SEPARATOR);
+      List<String> changed = Arrays.asList(parseTags(columns.length > 1 ? columns[1] : ""));
+      if (columns[0].equals(REMOVE_RECORD)) {
+        ret.removeAll(changed);
+      } else {
+        if (isCheckpoint(line)) {
+          ret.clear();
+        }
+        ret.addAll(changed);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Returns tags in the "[tag1, tag2]" form the log has always used. A backslash, comma or square
+   * bracket in a tag is escaped with a backslash, so every set of tags can be parsed back.
+   *
+   * @param tags the String representations of the tags
+   * @return String
+   */
+  static String formatTags(String[] tags) {
+    StringBuilder str = new StringBuilder("[");
+    for (int i = 0; i < tags.length; i++) {
+      if (i > 0) {
+        str.append(", ");
+      }
+      for (int j = 0; j < tags[i].length(); j++) {
+        char c = tags[i].charAt(j);
+        if (c == '\\' || c == ',' || c == '[' || c == ']') {
+          str.append('\\');
+        }
+        str.append(c);
+      }
     }
+    return str.append(']').toString();
   }
 
   /**
-   * Return last Erased Tags
+   * Parses tags written by formatTags, or by the Set.toString() the log used before.
    *
-   * @return String[]
+   * @param str the "[tag1, tag2]" form of the tags
+   * @return a String[] of the non-empty tags
    */
-  String[] getLastErasedTag() {
-    return lastErasedTags;
+  static String[] parseTags(String str) {
+    List<String> ret = new ArrayList<>();
+    StringBuilder tag = new StringBuilder();
+    int end = str.length();
+    for (int i = str.startsWith("[") ? 1 : 0; i < end; i++) {
+      char c = str.charAt(i);
+      if (c == '\\' && i + 1 < end) {
+        tag.append(str.charAt(++i));
+      } else if (c == ']' && i == end - 1) {
+        break;
+      } else if (c == ',') {
+        addParsedTag(ret, tag);
+      } else {
+        tag.append(c);
+      }
+    }
+    addParsedTag(ret, tag);
+    return ret.toArray(new String[ret.size()]);
+  }
+
+  /**
+   * Adds a parsed tag, without the space after its comma, if it isn't empty.
+   *
+   * @param tags the tags parsed so far
+   * @param tag the tag being parsed, which is cleared
+   */
+  private static void addParsedTag(List<String> tags, StringBuilder tag) {
+    String str = tag.toString().trim();
+    if (str.length() > 0) {
+      tags.add(str);
+    }
+    tag.setLength(0);
+  }
+
+  /**
+   * Returns the most used existing tags that start with the given prefix, without copying the
+   * whole set of tags.
+   *
+   * @param prefix the start of the tags to suggest
+   * @param limit the most tags to return
+   * @return a String[] of at most limit tags, from most to least used
+   */
+  public String[] suggestTags(String prefix, int limit) {
+    return tagTrie.complete(prefix, limit);
+  }
+
+  /**
+   * Returns the trie of the existing tags, whose usage counts can be kept up to date by a TagIndex.
+   *
+   * @return TagTrie
+   */
+  TagTrie getTagTrie() {
+    return tagTrie;
+  }
+
+  /**
+   * Sets how the usage count of a newly added tag is found.
+   *
+   * @param usageCounter counts how many files use a tag
+   */
+  void setUsageCounter(ToIntFunction<String> usageCounter) {
+    this.usageCounter = usageCounter;
+  }
+
+  /**
+   * Sets the bus added and removed tags are published on.
+   *
+   * @param eventBus the bus, or null to stop publishing
+   */
+  void setEventBus(TagEventBus eventBus) {
+    this.eventBus = eventBus;
+  }
+
+  /**
+   * Publishes an event on the eventBus, if there is one.
+   *
+   * @param event the event
+   */
+  private void publish(TagEvent event) {
+    if (eventBus != null) {
+      eventBus.publish(event);
+    }
+  }
+
+  /**
+   * Adds the tags of the files that were renamed or moved.
+   *
+   * @param events the events from the TagEventBus
+   */
+  @Override
+  public void onEvents(List<TagEvent> events) {
+    for (TagEvent event : events) {
+      if (event.isFileEvent()) {
+        try {
+          addTag(event.getFile().getTags());
+        } catch (Exception e) {
+          e.printStackTrace();
+        }
+      }
+    }
   }
 
   //  public Set<String> getPreviousGlobalTags() {
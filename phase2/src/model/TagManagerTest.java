@@ -0,0 +1,48 @@
+package model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TagManagerTest {
+
+  @Test
+  public void formattedTagsParseBack() throws Exception {
+    String[] tags = new String[] {"a", "b,c", "[d]", "e\\\\", "f"};
+    String formatted = TagManager.formatTags(tags);
+    Assert.assertArrayEquals(tags, TagManager.parseTags(formatted));
+  }
+
+  @Test
+  public void plainTagsKeepTheOldFormat() throws Exception {
+    assertEquals("[a, b]", TagManager.formatTags(new String[] {"a", "b"}));
+    assertEquals("[]", TagManager.formatTags(new String[0]));
+    Assert.assertArrayEquals(new String[] {"a", "b"}, TagManager.parseTags("[a, b]"));
+    Assert.assertArrayEquals(new String[0], TagManager.parseTags("[]"));
+  }
+
+  @Test
+  public void replayAppliesDeltasToTheLastCheckpoint() throws Exception {
+    List<String> lines =
+        Arrays.asList(
+            "[a] / [a, b] / 01/02/19 12:34:56",
+            "ADD / [c, d] / 01/02/19 12:34:57",
+            "REMOVE / [a, d] / 01/02/19 12:34:58",
+            "ADD / [e] / 01/02/19 12:34:59");
+    assertTrue(TagManager.isCheckpoint(lines.get(0)));
+    assertFalse(TagManager.isCheckpoint(lines.get(1)));
+    assertEquals(Arrays.asList("b", "c", "e"), new ArrayList<>(TagManager.replay(lines)));
+    assertEquals(
+        Arrays.asList("x"),
+        new ArrayList<>(
+            TagManager.replay(
+                Arrays.asList("ADD / [a] / time", "CHECKPOINT / [x] / time"))));
+  }
+}
@@ -0,0 +1,363 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A boolean query over tags, such as "@beach AND @2019 AND NOT @blurry". Tags can be written with
+ * or without their "@", terms next to each other are ANDed, NOT binds tighter than AND, AND binds
+ * tighter than OR, and parentheses group. The operators are case-insensitive.
+ *
+ * <p>Queries are evaluated as set operations over the TagBitmaps of a TagIndex. The operands of an
+ * AND are intersected from the smallest estimated set up, and NOT operands are subtracted last.
+ */
+public class TagQuery {
+
+  /** the root of the parsed query */
+  private final Node root;
+
+  /** the original text of the query */
+  private final String text;
+
+  /**
+   * Construct a new TagQuery from its parsed form.
+   *
+   * @param root the root of the parsed query
+   * @param text the original text of the query
+   */
+  private TagQuery(Node root, String text) {
+    this.root = root;
+    this.text = text;
+  }
+
+  /**
+   * Parses the text of a query.
+   *
+   * @param text the query, such as "@beach AND (@2019 OR @2020) AND NOT @blurry"
+   * @return the parsed TagQuery
+   * @throws IllegalArgumentException if text isn't a valid query
+   */
+  public static TagQuery parse(String text) {
+    Parser parser = new Parser(tokenize(text));
+    Node root = parser.parseOr();
+    if (parser.hasNext()) {
+      throw new IllegalArgumentException("Unexpected \"" + parser.peek() + "\" in query: " + text);
+    }
+    return new TagQuery(root, text);
+  }
+
+  /**
+   * Returns the ids of the indexed files that match the query.
+   *
+   * @param tagIndex the index to evaluate the query over
+   * @return a TagBitmap of the matching file ids
+   */
+  public TagBitmap evaluate(TagIndex tagIndex) {
+    return root.evaluate(tagIndex, tagIndex.getAllFileIds());
+  }
+
+  /**
+   * Returns the indexed files that match the query.
+   *
+   * @param tagIndex the index to evaluate the query over
+   * @return a AbsTaggableFile[] of the matching files
+   */
+  public AbsTaggableFile[] getFiles(TagIndex tagIndex) {
+    return tagIndex.getFiles(evaluate(tagIndex));
+  }
+
+  /**
+   * Generate the original text of the query.
+   *
+   * @return String
+   */
+  @Override
+  public String toString() {
+    return text;
+  }
+
+  /**
+   * Splits the text of a query into words and parentheses.
+   *
+   * @param text the query
+   * @return a List of the tokens
+   */
+  private static List<String> tokenize(String text) {
+    List<String> tokens = new ArrayList<>();
+    StringBuilder word = new StringBuilder();
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (Character.isWhitespace(c) || c == '(' || c == ')') {
+        if (word.length() > 0) {
+          tokens.add(word.toString());
+          word.setLength(0);
+        }
+        if (c == '(' || c == ')') {
+          tokens.add(String.valueOf(c));
+        }
+      } else {
+        word.append(c);
+      }
+    }
+    if (word.length() > 0) {
+      tokens.add(word.toString());
+    }
+    return tokens;
+  }
+
+  /** A recursive descent parser over the tokens of a query. */
+  private static class Parser {
+    /** the tokens of the query */
+    private final List<String> tokens;
+
+    /** the index of the next token */
+    private int position;
+
+    /**
+     * Construct a new Parser.
+     *
+     * @param tokens the tokens of the query
+     */
+    private Parser(List<String> tokens) {
+      this.tokens = tokens;
+    }
+
+    /**
+     * Returns whether there are tokens left.
+     *
+     * @return boolean
+     */
+    private boolean hasNext() {
+      return position < tokens.size();
+    }
+
+    /**
+     * Returns the next token without consuming it.
+     *
+     * @return String
+     */
+    private String peek() {
+      return tokens.get(position);
+    }
+
+    /**
+     * Returns whether the next token is the given keyword, ignoring case.
+     *
+     * @param keyword the keyword to check for
+     * @return boolean
+     */
+    private boolean peekIs(String keyword) {
+      return hasNext() && peek().equalsIgnoreCase(keyword);
+    }
+
+    /** or := and ("OR" and)* */
+    private Node parseOr() {
+      List<Node> operands = new ArrayList<>();
+      operands.add(parseAnd());
+      while (peekIs("OR")) {
+        position++;
+        operands.add(parseAnd());
+      }
+      return operands.size() == 1 ? operands.get(0) : new Or(operands);
+    }
+
+    /** and := not (["AND"] not)* */
+    private Node parseAnd() {
+      List<Node> operands = new ArrayList<>();
+      operands.add(parseNot());
+      while (hasNext() && !peekIs("OR") && !peek().equals(")")) {
+        if (peekIs("AND")) {
+          position++;
+        }
+        operands.add(parseNot());
+      }
+      return operands.size() == 1 ? operands.get(0) : new And(operands);
+    }
+
+    /** not := "NOT" not | "(" or ")" | tag */
+    private Node parseNot() {
+      if (!hasNext()) {
+        throw new IllegalArgumentException("Query ended where a tag was expected");
+      }
+      String token = tokens.get(position++);
+      if (token.equalsIgnoreCase("NOT")) {
+        return new Not(parseNot());
+      }
+      if (token.equals("(")) {
+        Node inner = parseOr();
+        if (!peekIs(")")) {
+          throw new IllegalArgumentException("Missing \")\" in query");
+        }
+        position++;
+        return inner;
+      }
+      if (token.equals(")") || token.equalsIgnoreCase("AND") || token.equalsIgnoreCase("OR")) {
+        throw new IllegalArgumentException("Unexpected \"" + token + "\" where a tag was expected");
+      }
+      String tag =
+          token.startsWith(AbsTaggableFile.TAG_MARKER)
+              ? token.substring(AbsTaggableFile.TAG_MARKER.length())
+              : token;
+      if (tag.isEmpty()) {
+        throw new IllegalArgumentException("Empty tag in query");
+      }
+      return new Tag(tag);
+    }
+  }
+
+  /** A node of a parsed query. */
+  private abstract static class Node {
+    /**
+     * Returns an estimate of how many files match this node, without evaluating it.
+     *
+     * @param tagIndex the index the query is evaluated over
+     * @param total the number of indexed files
+     * @return long
+     */
+    abstract long estimate(TagIndex tagIndex, long total);
+
+    /**
+     * Returns the ids of the files that match this node.
+     *
+     * @param tagIndex the index the query is evaluated over
+     * @param all the ids of every indexed file
+     * @return TagBitmap
+     */
+    abstract TagBitmap evaluate(TagIndex tagIndex, TagBitmap all);
+  }
+
+  /** Matches the files with a tag. */
+  private static class Tag extends Node {
+    /** the String representation of the tag */
+    private final String tag;
+
+    /**
+     * Construct a new Tag node.
+     *
+     * @param tag the String representation of the tag
+     */
+    private Tag(String tag) {
+      this.tag = tag;
+    }
+
+    @Override
+    long estimate(TagIndex tagIndex, long total) {
+      return tagIndex.getFileCount(tag);
+    }
+
+    @Override
+    TagBitmap evaluate(TagIndex tagIndex, TagBitmap all) {
+      return tagIndex.getFileIds(tag);
+    }
+  }
+
+  /** Matches the files that don't match its operand. */
+  private static class Not extends Node {
+    /** the node to negate */
+    private final Node operand;
+
+    /**
+     * Construct a new Not node.
+     *
+     * @param operand the node to negate
+     */
+    private Not(Node operand) {
+      this.operand = operand;
+    }
+
+    @Override
+    long estimate(TagIndex tagIndex, long total) {
+      return total - operand.estimate(tagIndex, total);
+    }
+
+    @Override
+    TagBitmap evaluate(TagIndex tagIndex, TagBitmap all) {
+      return all.andNot(operand.evaluate(tagIndex, all));
+    }
+  }
+
+  /** Matches the files that match all of its operands. */
+  private static class And extends Node {
+    /** the nodes that all have to match */
+    private final List<Node> operands;
+
+    /**
+     * Construct a new And node.
+     *
+     * @param operands the nodes that all have to match
+     */
+    private And(List<Node> operands) {
+      this.operands = operands;
+    }
+
+    @Override
+    long estimate(TagIndex tagIndex, long total) {
+      long estimate = total;
+      for (Node operand : operands) {
+        estimate = Math.min(estimate, operand.estimate(tagIndex, total));
+      }
+      return estimate;
+    }
+
+    @Override
+    TagBitmap evaluate(TagIndex tagIndex, TagBitmap all) {
+      long total = all.getCardinality();
+      List<Node> included = new ArrayList<>();
+      List<Node> excluded = new ArrayList<>();
+      for (Node operand : operands) {
+        if (operand instanceof Not) {
+          excluded.add(((Not) operand).operand);
+        } else {
+          included.add(operand);
+        }
+      }
+      // Intersect the smallest sets first, and subtract the largest exclusions first, so the
+      // running result shrinks as fast as possible and can stop as soon as it's empty.
+      included.sort(Comparator.comparingLong(operand -> operand.estimate(tagIndex, total)));
+      excluded.sort(
+          Comparator.comparingLong((Node operand) -> operand.estimate(tagIndex, total)).reversed());
+      TagBitmap result = included.isEmpty() ? all : included.get(0).evaluate(tagIndex, all);
+      for (int i = 1; i < included.size() && !result.isEmpty(); i++) {
+        result = result.and(included.get(i).evaluate(tagIndex, all));
+      }
+      for (int i = 0; i < excluded.size() && !result.isEmpty(); i++) {
+        result = result.andNot(excluded.get(i).evaluate(tagIndex, all));
+      }
+      return result;
+    }
+  }
+
+  /** Matches the files that match any of its operands. */
+  private static class Or extends Node {
+    /** the nodes of which any has to match */
+    private final List<Node> operands;
+
+    /**
+     * Construct a new Or node.
+     *
+     * @param operands the nodes of which any has to match
+     */
+    private Or(List<Node> operands) {
+      this.operands = operands;
+    }
+
+    @Override
+    long estimate(TagIndex tagIndex, long total) {
+      long estimate = 0;
+      for (Node operand : operands) {
+        estimate += operand.estimate(tagIndex, total);
+      }
+      return Math.min(estimate, total);
+    }
+
+    @Override
+    TagBitmap evaluate(TagIndex tagIndex, TagBitmap all) {
+      TagBitmap result = new TagBitmap();
+      for (Node operand : operands) {
+        result = result.or(operand.evaluate(tagIndex, all));
+      }
+      return result;
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package model;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TagQueryTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+  private TagIndex tagIndex;
+  private GeneralFile beach;
+  private GeneralFile beachSunset;
+  private GeneralFile sunset;
+
+  @Before
+  public void setUp() throws Exception {
+    tagIndex = new TagIndex();
+    beach = new GeneralFile(folder.newFile("a @beach"));
+    beachSunset = new GeneralFile(folder.newFile("b @beach @sunset"));
+    sunset = new GeneralFile(folder.newFile("c @sunset"));
+    tagIndex.add(beach);
+    tagIndex.add(beachSunset);
+    tagIndex.add(sunset);
+  }
+
+  @Test
+  public void queryWithAndOrNot() throws Exception {
+    Assert.assertArrayEquals(
+        new AbsTaggableFile[] {beach},
+        TagQuery.parse("@beach AND NOT @sunset").getFiles(tagIndex));
+    Assert.assertArrayEquals(
+        new AbsTaggableFile[] {beach, sunset},
+        TagQuery.parse("(@beach OR @sunset) not (beach and sunset)").getFiles(tagIndex));
+    Assert.assertArrayEquals(
+        new AbsTaggableFile[] {beachSunset},
+        TagQuery.parse("@mountain OR @sunset @beach").getFiles(tagIndex));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void queryWithMissingParenthesis() throws Exception {
+    TagQuery.parse("(@beach OR @sunset");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void queryWithOnlyATagMarker() throws Exception {
+    TagQuery.parse("@beach AND @");
+  }
+}
@@ -0,0 +1,258 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * A prefix tree of tags, each with a usage count. Every node also remembers the highest count under
+ * it, so the most used completions of a prefix are found best-first without visiting the rest of
+ * the subtree.
+ */
+public class TagTrie {
+
+  /** the node of the empty prefix */
+  private final Node root;
+
+  /** the number of tags in the trie */
+  private int size;
+
+  /** Construct a new, empty TagTrie. */
+  public TagTrie() {
+    root = new Node();
+  }
+
+  /**
+   * Adds a tag with a usage count of 0, or leaves its count alone if it's already in the trie.
+   *
+   * @param tag the String representation of the tag
+   * @return true if the tag wasn't already in the trie
+   */
+  public synchronized boolean add(String tag) {
+    Node node = root;
+    for (int i = 0; i < tag.length(); i++) {
+      node = node.children.computeIfAbsent(tag.charAt(i), c -> new Node());
+    }
+    if (node.tag != null) {
+      return false;
+    }
+    node.tag = tag;
+    node.count = 0;
+    size++;
+    updateMaxCounts(getPath(tag));
+    return true;
+  }
+
+  /**
+   * Adds a tag with the given usage count, or sets the count if it's already in the trie.
+   *
+   * @param tag the String representation of the tag
+   * @param count the usage count of the tag
+   */
+  public synchronized void put(String tag, int count) {
+    add(tag);
+    setCountIfPresent(tag, count);
+  }
+
+  /**
+   * Sets the usage count of a tag if it's in the trie.
+   *
+   * @param tag the String representation of the tag
+   * @param count the usage count of the tag
+   * @return true if the tag is in the trie
+   */
+  public synchronized boolean setCountIfPresent(String tag, int count) {
+    List<Node> path = getPath(tag);
+    if (path == null || path.get(path.size() - 1).tag == null) {
+      return false;
+    }
+    path.get(path.size() - 1).count = count;
+    updateMaxCounts(path);
+    return true;
+  }
+
+  /**
+   * Removes a tag from the trie.
+   *
+   * @param tag the String representation of the tag
+   * @return true if the tag was in the trie
+   */
+  public synchronized boolean remove(String tag) {
+    List<Node> path = getPath(tag);
+    if (path == null || path.get(path.size() - 1).tag == null) {
+      return false;
+    }
+    path.get(path.size() - 1).tag = null;
+    size--;
+    // Prune the nodes that no longer lead to any tag.
+    for (int i = path.size() - 1; i > 0; i--) {
+      Node node = path.get(i);
+      if (node.tag != null || !node.children.isEmpty()) {
+        break;
+      }
+      path.get(i - 1).children.remove(tag.charAt(i - 1));
+    }
+    updateMaxCounts(path);
+    return true;
+  }
+
+  /**
+   * Returns whether a tag is in the trie.
+   *
+   * @param tag the String representation of the tag
+   * @return boolean
+   */
+  public synchronized boolean contains(String tag) {
+    List<Node> path = getPath(tag);
+    return path != null && path.get(path.size() - 1).tag != null;
+  }
+
+  /**
+   * Returns the usage count of a tag.
+   *
+   * @param tag the String representation of the tag
+   * @return the usage count, or 0 if the tag isn't in the trie
+   */
+  public synchronized int getCount(String tag) {
+    List<Node> path = getPath(tag);
+    return path == null || path.get(path.size() - 1).tag == null
+        ? 0
+        : path.get(path.size() - 1).count;
+  }
+
+  /**
+   * Returns the number of tags in the trie.
+   *
+   * @return int
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Returns the most used tags that start with the given prefix.
+   *
+   * @param prefix the start of the tags to find
+   * @param limit the most tags to return
+   * @return a String[] of at most limit tags, from most to least used
+   */
+  public synchronized String[] complete(String prefix, int limit) {
+    List<String> ret = new ArrayList<>(Math.min(limit, size));
+    List<Node> path = getPath(prefix);
+    if (path == null || limit <= 0) {
+      return new String[0];
+    }
+    // Subtrees are queued by the highest count in them and tags by their own count, so a tag is
+    // only taken once nothing left in the queue can have a higher count.
+    PriorityQueue<Candidate> candidates = new PriorityQueue<>();
+    candidates.add(new Candidate(path.get(path.size() - 1), false));
+    while (!candidates.isEmpty() && ret.size() < limit) {
+      Candidate candidate = candidates.poll();
+      if (candidate.isTag) {
+        ret.add(candidate.node.tag);
+      } else {
+        if (candidate.node.tag != null) {
+          candidates.add(new Candidate(candidate.node, true));
+        }
+        for (Node child : candidate.node.children.values()) {
+          candidates.add(new Candidate(child, false));
+        }
+      }
+    }
+    return ret.toArray(new String[ret.size()]);
+  }
+
+  /**
+   * Returns the nodes from the root to the node of the given prefix.
+   *
+   * @param prefix the prefix to find
+   * @return a List of the nodes along the path, or null if no tag starts with prefix
+   */
+  private List<Node> getPath(String prefix) {
+    List<Node> path = new ArrayList<>(prefix.length() + 1);
+    Node node = root;
+    path.add(node);
+    for (int i = 0; i < prefix.length() && node != null; i++) {
+      node = node.children.get(prefix.charAt(i));
+      path.add(node);
+    }
+    return node == null ? null : path;
+  }
+
+  /**
+   * Recomputes the highest count under each node of a path, from the bottom up.
+   *
+   * @param path the nodes from the root down
+   */
+  private void updateMaxCounts(List<Node> path) {
+    for (int i = path.size() - 1; i >= 0; i--) {
+      Node node = path.get(i);
+      int maxCount = node.tag != null ? node.count : -1;
+      for (Node child : node.children.values()) {
+        maxCount = Math.max(maxCount, child.maxCount);
+      }
+      node.maxCount = maxCount;
+    }
+  }
+
+  /** A node of the trie, standing for the prefix spelled by the path to it. */
+  private static class Node {
+    /** the nodes of the prefixes one character longer */
+    private final Map<Character, Node> children;
+
+    /** the tag this prefix spells, or null if it isn't a tag */
+    private String tag;
+
+    /** the usage count of the tag */
+    private int count;
+
+    /** the highest usage count of any tag under this node, or -1 if there is none */
+    private int maxCount;
+
+    /** Construct a new Node that isn't a tag and has no children. */
+    private Node() {
+      children = new HashMap<>();
+      maxCount = -1;
+    }
+  }
+
+  /** A tag or a subtree waiting to be visited while completing a prefix. */
+  private static class Candidate implements Comparable<Candidate> {
+    /** the node of the tag or subtree */
+    private final Node node;
+
+    /** true if this is the node's own tag, false if it's the node's whole subtree */
+    private final boolean isTag;
+
+    /** the count the candidate is ranked by */
+    private final int priority;
+
+    /**
+     * Construct a new Candidate.
+     *
+     * @param node the node of the tag or subtree
+     * @param isTag true for the node's own tag, false for its whole subtree
+     */
+    private Candidate(Node node, boolean isTag) {
+      this.node = node;
+      this.isTag = isTag;
+      priority = isTag ? node.count : node.maxCount;
+    }
+
+    /**
+     * Ranks higher counts first, and a tag before a subtree with the same count.
+     *
+     * @param other the candidate to compare to
+     * @return int
+     */
+    @Override
+    public int compareTo(Candidate other) {
+      if (priority != other.priority) {
+        return Integer.compare(other.priority, priority);
+      }
+      return Boolean.compare(other.isTag, isTag);
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package model;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TagTrieTest {
+  private TagTrie tagTrie;
+
+  @Before
+  public void setUp() throws Exception {
+    tagTrie = new TagTrie();
+    tagTrie.put("beach", 5);
+    tagTrie.put("bear", 9);
+    tagTrie.put("be", 1);
+    tagTrie.put("cat", 20);
+  }
+
+  @Test
+  public void completeRanksByCount() throws Exception {
+    Assert.assertArrayEquals(new String[] {"bear", "beach", "be"}, tagTrie.complete("be", 10));
+    Assert.assertArrayEquals(new String[] {"cat", "bear"}, tagTrie.complete("", 2));
+    Assert.assertArrayEquals(new String[0], tagTrie.complete("dog", 10));
+  }
+
+  @Test
+  public void setCountReordersCompletions() throws Exception {
+    tagTrie.setCountIfPresent("be", 100);
+    Assert.assertArrayEquals(new String[] {"be", "bear"}, tagTrie.complete("b", 2));
+    assertFalse(tagTrie.setCountIfPresent("bee", 100));
+  }
+
+  @Test
+  public void removeTag() throws Exception {
+    assertTrue(tagTrie.remove("bear"));
+    assertFalse(tagTrie.contains("bear"));
+    assertTrue(tagTrie.contains("be"));
+    assertEquals(3, tagTrie.size());
+    Assert.assertArrayEquals(new String[] {"beach", "be"}, tagTrie.complete("be", 10));
+  }
+
+  @Test
+  public void addKeepsExistingCount() throws Exception {
+    assertFalse(tagTrie.add("cat"));
+    assertEquals(20, tagTrie.getCount("cat"));
+  }
+}
@@ -1,20 +1,32 @@
 package model;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /** Manages all the imageFiles under a root folder */
 public class TaggableFileManager {
-  /** String to match all image files */
-  private static final String IMAGE_FILE = "^.*[.](jpg|JPG|jpeg|JPEG|png|PNG|gif|GIF|bmp|BMP)$";
-
-  private static final String TEXT_FILE =
-      "^.*[.](txt|TXT|doc|DOC|docx|DOCX|odt|ODT|pdf|PDF|rtf|RTF|tex|TEX)$";
-  private static final String AUDIO_FILE =
-      "^.*[.](aif|AIF|cda|CDA|mid|MID|midi|MIDI|mp3|MP3|mp4|MP4|mpa|MPA|ogg|OGG|wav|WAV|wma|WMA|wpl|WPL)$";
+  /** the most files renamed at once by applyBatch */
+  private static final int BATCH_THREADS = Runtime.getRuntime().availableProcessors();
 
   /** the root of the directory */
   private File root;
@@ -22,8 +34,35 @@ public class TaggableFileManager {
   /** the tagManager */
   private TagManager tagManager;
 
-  /** a set of AbsTaggableFiles */
-  private Set<AbsTaggableFile> absTaggableFiles;
+  /** the files that have each tag, kept up to date as files are scanned and renamed */
+  private TagIndex tagIndex;
+
+  /** the AbsTaggableFiles found by the last scan, by their current path */
+  private Map<File, AbsTaggableFile> absTaggableFiles;
+
+  /** how the tree under the root is walked when getting files recursively */
+  private ScanMode scanMode;
+
+  /** the types of files that can be tagged, by extension */
+  private FileTypeRegistry fileTypes;
+
+  /** the index of the files under the root kept up to date in ScanMode.WATCH, or null */
+  private LiveFileIndex liveFileIndex;
+
+  /** the saved record of the last scan of the root used in ScanMode.SNAPSHOT and WATCH, or null */
+  private ScanSnapshot scanSnapshot;
+
+  /** the journal the files log their history in, or null if they use hidden log files */
+  private Journal journal;
+
+  /** delivers renames, moves and tag changes to the tagIndex, the tagManager and the viewer */
+  private TagEventBus eventBus;
+
+  /** the history of the files under the root, or null until it's asked for */
+  private TagHistory history;
+
+  /** renames the files of a TagBatch in parallel */
+  private final ExecutorService batchExecutor;
 
   /**
    * Construct a new TaggableFileManager object.
@@ -42,121 +81,372 @@ public class TaggableFileManager {
   TaggableFileManager(File file) {
     root = new File("");
     tagManager = new TagManager();
-    absTaggableFiles = new HashSet<>();
+    tagIndex = new TagIndex();
+    tagIndex.setTagTrie(tagManager.getTagTrie());
+    tagManager.setUsageCounter(tagIndex::getFileCount);
+    eventBus = new TagEventBus();
+    eventBus.subscribe(tagIndex);
+    eventBus.subscribe(tagManager);
+    tagManager.setEventBus(eventBus);
+    absTaggableFiles = new HashMap<>();
+    scanMode = ScanMode.SEQUENTIAL;
+    fileTypes = new FileTypeRegistry();
+    batchExecutor =
+        Executors.newFixedThreadPool(
+            BATCH_THREADS,
+            runnable -> {
+              Thread thread = new Thread(runnable, "TaggableFileManager batch");
+              thread.setDaemon(true);
+              return thread;
+            });
     changeDirectory(file);
   }
 
   /**
    * Returns all the image files anywhere under the root directory.
    *
-   * @param fileType file type to return, must be either "Image","Audio",or "Text"
+   * @param fileType file type to return, must be a type registered in getFileTypes(), such as
+   *     "Image","Audio",or "Text"
    * @param toggle true if recursively get all taggable files, false if just local
    * @return a AbsTaggableFile[] of all files that match the fileType and recursively under the root
    *     if the toggle is true. Directly under the root if false.
    */
   public AbsTaggableFile[] getTaggableFiles(String fileType, boolean toggle) {
-    String regex = getRegEx(fileType);
+    return scan(name -> fileTypes.isType(name, fileType), toggle);
+  }
+
+  /**
+   * Returns a lazy Stream of the files under the root directory. Directories are only listed as
+   * the Stream is consumed, so the first files are available before the whole tree is walked and
+   * files that aren't consumed are never created. Files are returned depth-first in name order,
+   * and are the same instances the other methods return for the same paths.
+   *
+   * @param fileType file type to return, must be a type registered in getFileTypes()
+   * @param toggle true if recursively get all taggable files, false if just local
+   * @return a Stream of the AbsTaggableFiles that match the fileType
+   */
+  public Stream<AbsTaggableFile> streamTaggableFiles(String fileType, boolean toggle) {
+    return streamFiles(fileType, toggle).map(this::getStreamedTaggableFile);
+  }
+
+  /**
+   * Returns one page of the files under the root directory, walking only as much of the tree as
+   * needed to fill it.
+   *
+   * @param fileType file type to return, must be a type registered in getFileTypes()
+   * @param toggle true if recursively get all taggable files, false if just local
+   * @param offset the number of matching files to skip
+   * @param limit the most files to return
+   * @return a AbsTaggableFile[] of at most limit files, in the order of streamTaggableFiles
+   */
+  public AbsTaggableFile[] getTaggableFiles(
+      String fileType, boolean toggle, int offset, int limit) {
+    return streamFiles(fileType, toggle)
+        .skip(offset)
+        .limit(limit)
+        .map(this::getStreamedTaggableFile)
+        .toArray(AbsTaggableFile[]::new);
+  }
+
+  /**
+   * Returns a lazy Stream of the physical files under the root directory.
+   *
+   * @param fileType file type to return, must be a type registered in getFileTypes()
+   * @param toggle true if recursively get all files, false if just local
+   * @return a Stream of the files that match the fileType
+   */
+  private Stream<File> streamFiles(String fileType, boolean toggle) {
+    eventBus.flush();
+    rekeyRenamedFiles();
+    return StreamSupport.stream(
+        new TaggableFileSpliterator(root, name -> fileTypes.isType(name, fileType), toggle),
+        false);
+  }
+
+  /**
+   * Returns the files of every registered type under the root directory, classified in a single
+   * scan.
+   *
+   * @param toggle true if recursively get all taggable files, false if just local
+   * @return a Map from each registered type to the AbsTaggableFile[] of that type
+   */
+  public Map<String, AbsTaggableFile[]> getTaggableFilesByType(boolean toggle) {
+    Map<String, List<AbsTaggableFile>> filesByType = new LinkedHashMap<>();
+    for (String type : fileTypes.getTypes()) {
+      filesByType.put(type, new ArrayList<>());
+    }
+    for (AbsTaggableFile absTaggableFile : scan(name -> fileTypes.getType(name) != null, toggle)) {
+      filesByType.get(fileTypes.getType(absTaggableFile.getFile().getName())).add(absTaggableFile);
+    }
+    Map<String, AbsTaggableFile[]> ret = new LinkedHashMap<>();
+    for (Map.Entry<String, List<AbsTaggableFile>> entry : filesByType.entrySet()) {
+      ret.put(entry.getKey(), entry.getValue().toArray(new AbsTaggableFile[0]));
+    }
+    return ret;
+  }
+
+  /**
+   * Returns all the files under the root directory whose names pass the given test.
+   *
+   * @param nameFilter the test a file's name must pass to be returned
+   * @param toggle true if recursively get all taggable files, false if just local
+   * @return a AbsTaggableFile[] of all the matching files
+   */
+  private AbsTaggableFile[] scan(Predicate<String> nameFilter, boolean toggle) {
+    if (scanMode == ScanMode.WATCH && getLiveFileIndex() != null) {
+      // Apply the renames and moves the WatchService may not have reported yet.
+      eventBus.flush();
+      List<File> matchingFiles = new ArrayList<>();
+      for (File file : liveFileIndex.getFiles(toggle)) {
+        if (nameFilter.test(file.getName())) {
+          matchingFiles.add(file);
+        }
+      }
+      return generateAbsTaggableFiles(matchingFiles, Collections.emptyMap());
+    }
+    if (scanMode == ScanMode.SNAPSHOT && root.isDirectory()) {
+      List<File> matchingFiles = getScanSnapshot().walk(nameFilter, toggle);
+      scanSnapshot.save();
+      return generateAbsTaggableFiles(matchingFiles, Collections.emptyMap());
+    }
+    if (scanMode == ScanMode.NIO) {
+      Map<File, BasicFileAttributes> attributes = NioFileWalker.walk(root, nameFilter, toggle);
+      return generateAbsTaggableFiles(new ArrayList<>(attributes.keySet()), attributes);
+    }
     List<File> matchingFiles = new ArrayList<>();
     if (toggle) {
-      if (root.isDirectory() || (root.isFile() && root.getName().matches(regex))) {
-        matchingFiles.add(root);
-
-        int i = 0;
-        while (i < matchingFiles.size()) {
-          // Check if element at i in ret is a Directory, a File, or it exists.
-          if (matchingFiles.get(i).isDirectory()) {
-            // Element at i is a directory, so determine if it has children and remove the Element
-            // at
-            // i.
-            // Check if the Element at i has children.
-            if (matchingFiles.get(i).list() != null) {
-              // Element at i has children, so add children to the ArrayList if they match the
-              // regEx.
-              for (File file : matchingFiles.get(i).listFiles()) {
-                if (file.getName().matches(regex) || file.isDirectory()) {
-                  matchingFiles.add(file);
-                }
-              }
-            }
-            matchingFiles.remove(i);
-          } else if (matchingFiles.get(i).isFile()) {
-            // Element at i is a File, so increment i by 1.
-            i += 1;
-          } else {
-            // Element doesn't exist in filesystem, so remove from ret.
-            matchingFiles.remove(i);
-          }
+      if (root.isDirectory() || (root.isFile() && nameFilter.test(root.getName()))) {
+        switch (scanMode) {
+          case PARALLEL:
+            matchingFiles =
+                ForkJoinPool.commonPool().invoke(new ParallelFileWalker(root, nameFilter));
+            break;
+          default:
+            matchingFiles = walkSequentially(nameFilter);
+            break;
         }
       }
     } else {
-      if (root.isFile() && root.getName().matches(regex)) {
+      if (root.isFile() && nameFilter.test(root.getName())) {
         matchingFiles.add(root);
       }
       if (root.list() != null) {
         for (File file : root.listFiles()) {
-          if (file.isFile() && file.getName().matches(regex)) {
+          if (file.isFile() && nameFilter.test(file.getName())) {
             matchingFiles.add(file);
           }
         }
       }
     }
-    return generateAbsTaggableFiles(matchingFiles);
+    return generateAbsTaggableFiles(matchingFiles, Collections.emptyMap());
   }
 
   /**
-   * Returns the regex according to the type of the file.
-   * @param fileType the String representation of the type of this file
-   * @return String
+   * Returns the saved record of the last scan of the root, loading it if it isn't loaded yet.
+   *
+   * @return ScanSnapshot
+   */
+  private ScanSnapshot getScanSnapshot() {
+    if (scanSnapshot == null) {
+      scanSnapshot = ScanSnapshot.forRoot(root);
+    }
+    return scanSnapshot;
+  }
+
+  /**
+   * Returns the index of the files under the root, creating it from the saved snapshot of the root
+   * if it doesn't exist yet, so only the directories changed since the last run are listed.
+   *
+   * @return LiveFileIndex, or null if the root can't be watched
    */
-  private String getRegEx(String fileType) {
-    String regex = "";
-    if (fileType != null) {
-      switch (fileType) {
-        case "Image":
-          regex = IMAGE_FILE;
-          break;
-        case "Text":
-          regex = TEXT_FILE;
-          break;
-        case "Audio":
-          regex = AUDIO_FILE;
-          break;
+  private LiveFileIndex getLiveFileIndex() {
+    if (liveFileIndex == null && root.isDirectory()) {
+      try {
+        liveFileIndex = new LiveFileIndex(root, getScanSnapshot());
+        scanSnapshot.save();
+        eventBus.subscribe(liveFileIndex);
+      } catch (IOException e) {
+        e.printStackTrace();
       }
     }
-    return regex;
+    return liveFileIndex;
+  }
+
+  /** Stops watching the root, if it's being watched. */
+  private void closeLiveFileIndex() {
+    if (liveFileIndex != null) {
+      eventBus.unsubscribe(liveFileIndex);
+      liveFileIndex.close();
+      liveFileIndex = null;
+    }
   }
 
   /**
-   * Return an array of the file in list
+   * Walks the whole tree under the root breadth-first on the calling thread.
+   *
+   * @param nameFilter the test a file's name must pass to be returned
+   * @return a List of all the matching files under the root
+   */
+  private List<File> walkSequentially(Predicate<String> nameFilter) {
+    List<File> matchingFiles = new ArrayList<>();
+    matchingFiles.add(root);
+
+    int i = 0;
+    while (i < matchingFiles.size()) {
+      // Check if element at i in ret is a Directory, a File, or it exists.
+      if (matchingFiles.get(i).isDirectory()) {
+        // Element at i is a directory, so determine if it has children and remove the Element
+        // at
+        // i.
+        // Check if the Element at i has children.
+        if (matchingFiles.get(i).list() != null) {
+          // Element at i has children, so add children to the ArrayList if they pass the
+          // nameFilter.
+          for (File file : matchingFiles.get(i).listFiles()) {
+            if (nameFilter.test(file.getName()) || file.isDirectory()) {
+              matchingFiles.add(file);
+            }
+          }
+        }
+        matchingFiles.remove(i);
+      } else if (matchingFiles.get(i).isFile()) {
+        // Element at i is a File, so increment i by 1.
+        i += 1;
+      } else {
+        // Element doesn't exist in filesystem, so remove from ret.
+        matchingFiles.remove(i);
+      }
+    }
+    return matchingFiles;
+  }
+
+  /**
+   * Return an array of the file in list. Files already found by an earlier scan are reused, so
+   * only files at new paths are created.
+   *
    * @param files A list of files to generate
+   * @param attributes the attributes already read for some of the files while scanning
    * @return a AbsTaggableFile[] array
    */
-  private AbsTaggableFile[] generateAbsTaggableFiles(List<File> files) {
-    List<AbsTaggableFile> possibleAbsTaggableFiles = new ArrayList<>(files.size());
-    for (File file : files) {
-      if (file.getName().matches(IMAGE_FILE)) {
-        possibleAbsTaggableFiles.add(new ImageFile(file));
-      } else {
-        possibleAbsTaggableFiles.add(new GeneralFile(file));
+  private AbsTaggableFile[] generateAbsTaggableFiles(
+      List<File> files, Map<File, BasicFileAttributes> attributes) {
+    eventBus.flush();
+    rekeyRenamedFiles();
+    AbsTaggableFile[] ret = new AbsTaggableFile[files.size()];
+    for (int i = 0; i < ret.length; i++) {
+      File file = files.get(i);
+      AbsTaggableFile absTaggableFile = getOrCreateTaggableFile(file);
+      BasicFileAttributes fileAttributes = attributes.get(file);
+      if (fileAttributes != null) {
+        absTaggableFile.setAttributes(fileAttributes);
+      }
+      String[] tags = null;
+      if (scanSnapshot != null) {
+        tags = scanSnapshot.getTags(file);
+      }
+      if (tags == null) {
+        tags = absTaggableFile.getTags();
       }
+      try {
+        tagManager.addTag(tags);
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+      ret[i] = absTaggableFile;
+    }
+    if (absTaggableFiles.size() > ret.length) {
+      // Some files weren't found this time, so forget them.
+      Set<AbsTaggableFile> found = Collections.newSetFromMap(new IdentityHashMap<>());
+      found.addAll(Arrays.asList(ret));
+      absTaggableFiles.values().retainAll(found);
+      tagIndex.retainAll(found);
+    }
+    return ret;
+  }
+
+  /**
+   * Returns the registered AbsTaggableFile at a path, creating, registering and indexing a new one
+   * if there isn't one.
+   *
+   * @param file the physical file
+   * @return AbsTaggableFile
+   */
+  private AbsTaggableFile getOrCreateTaggableFile(File file) {
+    AbsTaggableFile absTaggableFile = absTaggableFiles.get(file);
+    if (absTaggableFile == null) {
+      absTaggableFile = createConnectedTaggableFile(file);
+      absTaggableFiles.put(file, absTaggableFile);
     }
-    Set<AbsTaggableFile> newAbsTaggableFiles =
-        new HashSet<>(possibleAbsTaggableFiles.size() + absTaggableFiles.size());
-    newAbsTaggableFiles.addAll(absTaggableFiles);
-    newAbsTaggableFiles.addAll(possibleAbsTaggableFiles);
-    newAbsTaggableFiles.retainAll(possibleAbsTaggableFiles);
-    tagManager.deleteObservers();
-    for (AbsTaggableFile absTaggableFile : newAbsTaggableFiles) {
+    tagIndex.add(absTaggableFile);
+    return absTaggableFile;
+  }
+
+  /**
+   * Returns the registered AbsTaggableFile for a file found by a stream, and adds the tags of
+   * files that weren't registered yet to the tagManager as a scan would.
+   *
+   * @param file the physical file
+   * @return AbsTaggableFile
+   */
+  private AbsTaggableFile getStreamedTaggableFile(File file) {
+    boolean registered = absTaggableFiles.containsKey(file);
+    AbsTaggableFile absTaggableFile = getOrCreateTaggableFile(file);
+    if (!registered) {
       try {
         tagManager.addTag(absTaggableFile.getTags());
       } catch (Exception e) {
         e.printStackTrace();
       }
-      absTaggableFile.addObserver(tagManager);
-      tagManager.addObserver(absTaggableFile);
     }
-    absTaggableFiles = newAbsTaggableFiles;
-    return absTaggableFiles.toArray(new AbsTaggableFile[absTaggableFiles.size()]);
+    return absTaggableFile;
+  }
+
+  /** Moves the files renamed or moved since the last scan to their current paths. */
+  private void rekeyRenamedFiles() {
+    List<AbsTaggableFile> renamed = null;
+    Iterator<Map.Entry<File, AbsTaggableFile>> it = absTaggableFiles.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<File, AbsTaggableFile> entry = it.next();
+      if (!entry.getKey().equals(entry.getValue().getFile())) {
+        if (renamed == null) {
+          renamed = new ArrayList<>();
+        }
+        renamed.add(entry.getValue());
+        it.remove();
+      }
+    }
+    if (renamed != null) {
+      for (AbsTaggableFile absTaggableFile : renamed) {
+        absTaggableFiles.put(absTaggableFile.getFile(), absTaggableFile);
+      }
+    }
+  }
+
+  /**
+   * Returns a new AbsTaggableFile of the right kind for the given file.
+   *
+   * @param file the physical file
+   * @return an ImageFile if file is an image, a GeneralFile otherwise
+   */
+  private AbsTaggableFile createTaggableFile(File file) {
+    if (fileTypes.isType(file.getName(), FileTypeRegistry.IMAGE)) {
+      return new ImageFile(file);
+    }
+    return new GeneralFile(file);
+  }
+
+  /**
+   * Returns a new AbsTaggableFile for the given file that publishes its renames on the eventBus
+   * and logs them in the journal, if there is one.
+   *
+   * @param file the physical file
+   * @return AbsTaggableFile
+   */
+  private AbsTaggableFile createConnectedTaggableFile(File file) {
+    AbsTaggableFile absTaggableFile = createTaggableFile(file);
+    absTaggableFile.setEventBus(eventBus);
+    absTaggableFile.setJournal(journal);
+    return absTaggableFile;
   }
 
   /**
@@ -165,9 +455,58 @@ public class TaggableFileManager {
    * @return a String[] of all the tags.
    */
   public String[] getAllCurrentTags() {
+    eventBus.flush();
     return tagManager.getTags();
   }
 
+  /**
+   * Returns the files found by the last scan that have all of the given tags, using the tag index
+   * instead of checking every file.
+   *
+   * @param tags the Array of String representations of tags the files must have
+   * @return a AbsTaggableFile[] of the files with every tag
+   */
+  public AbsTaggableFile[] getTaggableFilesWithTags(String[] tags) {
+    eventBus.flush();
+    return tagIndex.getFilesWithAllTags(tags);
+  }
+
+  /**
+   * Returns the files found by the last scan that match a boolean tag query, such as "@beach AND
+   * @2019 AND NOT @blurry".
+   *
+   * @param query the text of the query, see TagQuery for its syntax
+   * @return a AbsTaggableFile[] of the matching files
+   * @throws IllegalArgumentException if query isn't a valid query
+   */
+  public AbsTaggableFile[] query(String query) {
+    return query(TagQuery.parse(query));
+  }
+
+  /**
+   * Returns the files found by the last scan that match a parsed tag query.
+   *
+   * @param query the parsed query
+   * @return a AbsTaggableFile[] of the matching files
+   */
+  public AbsTaggableFile[] query(TagQuery query) {
+    eventBus.flush();
+    return query.getFiles(tagIndex);
+  }
+
+  /**
+   * Returns the most used current tags that start with the given prefix, ranked by how many of the
+   * scanned files have them.
+   *
+   * @param prefix the start of the tags to suggest
+   * @param limit the most tags to return
+   * @return a String[] of at most limit tags
+   */
+  public String[] suggestTags(String prefix, int limit) {
+    eventBus.flush();
+    return tagManager.suggestTags(prefix, limit);
+  }
+
   /**
    * Deletes Tag from all files and tagManager
    *
@@ -175,8 +514,23 @@ public class TaggableFileManager {
    * @return true if it succeeds, false if it doesn't.
    */
   public boolean deleteTag(String[] tags) {
+    return deleteTag(tags, null);
+  }
+
+  /**
+   * Deletes Tag from the files that have it and from tagManager. Only the files the tagIndex says
+   * have one of the tags are renamed, in parallel, with the listener told as each one is done.
+   *
+   * @param tags the Array of String representations of tags to delete
+   * @param listener told as each file is done, or null
+   * @return true if it succeeds, false if it doesn't.
+   */
+  public boolean deleteTag(String[] tags, ProgressListener listener) {
+    eventBus.flush();
+    AbsTaggableFile[] affected = tagIndex.getFilesWithAnyTag(tags);
+    BatchResult result = applyBatch(new TagBatch(affected, null, tags), false, listener);
     try {
-      return tagManager.removeTag(tags);
+      return tagManager.removeTag(tags) && result.isSuccessful();
     } catch (Exception e) {
       e.printStackTrace();
       return false;
@@ -198,6 +552,121 @@ public class TaggableFileManager {
     }
   }
 
+  /**
+   * Applies a TagBatch to all of its files, renaming each file at most once. The files are renamed
+   * in parallel, and their renames are only published once every rename is done.
+   *
+   * @param batch the plan of tags to add and remove
+   * @param rollback whether to rename the renamed files back if any file fails
+   * @return the outcome for each file
+   */
+  public BatchResult applyBatch(TagBatch batch, boolean rollback) {
+    return applyBatch(batch, rollback, null);
+  }
+
+  /**
+   * Applies a TagBatch to all of its files, telling the listener as each file is done.
+   *
+   * @param batch the plan of tags to add and remove
+   * @param rollback whether to rename the renamed files back if any file fails
+   * @param listener told as each file is done, or null
+   * @return the outcome for each file
+   */
+  public BatchResult applyBatch(TagBatch batch, boolean rollback, ProgressListener listener) {
+    eventBus.flush();
+    BatchResult result = new BatchResult();
+    AbsTaggableFile[] files = batch.getFiles();
+    AtomicInteger done = new AtomicInteger();
+    try {
+      List<Future<?>> futures = new ArrayList<>(files.length);
+      for (AbsTaggableFile absTaggableFile : files) {
+        futures.add(
+            batchExecutor.submit(
+                () -> {
+                  applyBatch(batch, absTaggableFile, result);
+                  if (listener != null) {
+                    listener.onProgress(done.incrementAndGet(), files.length);
+                  }
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      if (rollback && !result.isSuccessful()) {
+        List<Future<?>> undos = new ArrayList<>();
+        for (AbsTaggableFile absTaggableFile : result.getSucceeded()) {
+          String oldName = result.getOldName(absTaggableFile);
+          undos.add(batchExecutor.submit(() -> undoBatch(absTaggableFile, oldName, result)));
+        }
+        for (Future<?> undo : undos) {
+          undo.get();
+        }
+        result.setRolledBack();
+      }
+    } catch (InterruptedException | ExecutionException e) {
+      e.printStackTrace();
+    }
+    // The renames are published together, so the index and the WATCH mode's listing of the files
+    // are brought up to date once for the whole batch.
+    List<TagEvent> events = new ArrayList<>(result.getSucceeded().size());
+    for (AbsTaggableFile absTaggableFile : result.getSucceeded()) {
+      events.add(TagEvent.fileRenamed(absTaggableFile, result.getOldName(absTaggableFile)));
+    }
+    eventBus.publishAll(events);
+    eventBus.flush();
+    if ((!result.isRolledBack() || !result.getRollbackFailed().isEmpty())
+        && !result.getSucceeded().isEmpty()
+        && !batch.getTagsToAdd().isEmpty()) {
+      addTag(batch.getTagsToAdd().toArray(new String[0]));
+    }
+    return result;
+  }
+
+  /**
+   * Applies a TagBatch to one file, without publishing the rename.
+   *
+   * @param batch the plan of tags to add and remove
+   * @param absTaggableFile the file to rename
+   * @param result where to record the outcome
+   */
+  private void applyBatch(TagBatch batch, AbsTaggableFile absTaggableFile, BatchResult result) {
+    String oldName = absTaggableFile.getName();
+    String newName = batch.apply(absTaggableFile);
+    if (newName.equals(oldName)) {
+      result.addUnchanged(absTaggableFile);
+      return;
+    }
+    try {
+      if (absTaggableFile.rename(newName, false)) {
+        result.addSucceeded(absTaggableFile, oldName);
+      } else {
+        result.addFailed(absTaggableFile, null);
+      }
+    } catch (Exception e) {
+      result.addFailed(absTaggableFile, e);
+    }
+  }
+
+  /**
+   * Renames a file back to the name it had before a TagBatch was applied to it.
+   *
+   * @param absTaggableFile the renamed file
+   * @param oldName the name it had before
+   * @param result where to record a file that couldn't be renamed back
+   */
+  private void undoBatch(AbsTaggableFile absTaggableFile, String oldName, BatchResult result) {
+    try {
+      if (!absTaggableFile.rename(oldName, false)) {
+        result.addRollbackFailed(
+            absTaggableFile,
+            new IOException(
+                "Couldn't rename " + absTaggableFile.getName() + " back to " + oldName));
+      }
+    } catch (Exception e) {
+      result.addRollbackFailed(absTaggableFile, e);
+    }
+  }
+
   /**
    * Changes the working directory of TaggableFileManager if new directory exists. All tags that
    * aren't associated with an Image will when be unavailable when switch happens unless restored.
@@ -221,10 +690,68 @@ public class TaggableFileManager {
     if (root.exists()) {
       ret = true;
       this.root = root;
+      closeLiveFileIndex();
+      closeHistory();
+      scanSnapshot = null;
+      if (journal != null) {
+        setJournaled(true);
+      }
     }
     return ret;
   }
 
+  /**
+   * Sets whether the history of the files is kept in one Journal under the root instead of a
+   * hidden log file next to each file. Hidden log files are imported into the journal as their
+   * files are next renamed, or all at once with JournalMigration.
+   *
+   * @param journaled whether to use the journal
+   * @return true if it succeeds, false if the journal can't be opened.
+   */
+  public boolean setJournaled(boolean journaled) {
+    try {
+      journal = journaled ? Journal.forRoot(root) : null;
+    } catch (IOException e) {
+      e.printStackTrace();
+      journal = null;
+      return false;
+    }
+    for (AbsTaggableFile absTaggableFile : absTaggableFiles.values()) {
+      absTaggableFile.setJournal(journal);
+    }
+    return true;
+  }
+
+  /**
+   * Returns whether the history of the files is kept in a Journal.
+   *
+   * @return boolean
+   */
+  public boolean isJournaled() {
+    return journal != null;
+  }
+
+  /**
+   * Returns the bus that renames, moves and tag changes are published on. Listeners subscribed to
+   * it stay subscribed when the directory is rescanned or changed.
+   *
+   * @return TagEventBus
+   */
+  public TagEventBus getEventBus() {
+    return eventBus;
+  }
+
+  /**
+   * Stops the threads and the watching of the root this TaggableFileManager uses. It can't be used
+   * after it's closed.
+   */
+  public void close() {
+    closeLiveFileIndex();
+    closeHistory();
+    batchExecutor.shutdown();
+    eventBus.close();
+  }
+
   /**
    * Returns the root
    * @return File
@@ -232,4 +759,59 @@ public class TaggableFileManager {
   public File getRoot() {
     return root;
   }
+
+  /**
+   * Returns the history of every file under the root, for finding what was logged in a time range.
+   * The indexes of the log files are kept until the directory is changed or this is closed.
+   *
+   * @return TagHistory
+   */
+  public TagHistory getHistory() {
+    if (history == null) {
+      history = new TagHistory(root);
+    }
+    return history;
+  }
+
+  /** Closes the history of the root, if it was asked for. */
+  private void closeHistory() {
+    if (history != null) {
+      history.close();
+      history = null;
+    }
+  }
+
+  /**
+   * Returns the registry of file types this TaggableFileManager can find. Types registered with it
+   * can be passed to getTaggableFiles.
+   *
+   * @return FileTypeRegistry
+   */
+  public FileTypeRegistry getFileTypes() {
+    return fileTypes;
+  }
+
+  /**
+   * Returns how the tree under the root is walked when getting files recursively.
+   *
+   * @return ScanMode
+   */
+  public ScanMode getScanMode() {
+    return scanMode;
+  }
+
+  /**
+   * Sets how the tree under the root is walked when getting files recursively.
+   *
+   * @param scanMode the ScanMode to walk the tree with
+   */
+  public void setScanMode(ScanMode scanMode) {
+    if (scanMode != ScanMode.WATCH) {
+      closeLiveFileIndex();
+    }
+    if (scanMode != ScanMode.SNAPSHOT && scanMode != ScanMode.WATCH) {
+      scanSnapshot = null;
+    }
+    this.scanMode = scanMode;
+  }
 }
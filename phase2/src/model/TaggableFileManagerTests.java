@@ -1,6 +1,7 @@
 package model;
 // Note: I'm using Junit4 because of the Temporary Folder Rule that it has (and was removed in
 // Junit5) to save on headaches
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
@@ -9,8 +10,17 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class TaggableFileManagerTests {
   @Rule public TemporaryFolder folder = new TemporaryFolder();
@@ -34,6 +44,11 @@ public class TaggableFileManagerTests {
     taggableFileManager = new TaggableFileManager(folder.getRoot());
   }
 
+  @After
+  public void tearDown() {
+    taggableFileManager.close();
+  }
+
   @Test
   public void testGetLocalImageFiles() {
     ImageFile[] expectedResults = new ImageFile[] {new ImageFile(imageFile)};
@@ -47,6 +62,217 @@ public class TaggableFileManagerTests {
     Assert.assertArrayEquals(expectedResults, taggableFileManager.getTaggableFiles("Image", true));
   }
 
+  @Test
+  public void testGetAllImageFilesInParallel() {
+    taggableFileManager.setScanMode(ScanMode.PARALLEL);
+    Set<AbsTaggableFile> expectedResults =
+        new HashSet<>(
+            Arrays.asList(new ImageFile(imageFile), new ImageFile(subFolderedImageFile)));
+    assertEquals(
+        expectedResults,
+        new HashSet<>(Arrays.asList(taggableFileManager.getTaggableFiles("Image", true))));
+  }
+
+  @Test
+  public void testGetAllImageFilesWithNio() {
+    taggableFileManager.setScanMode(ScanMode.NIO);
+    Set<AbsTaggableFile> expectedResults =
+        new HashSet<>(
+            Arrays.asList(new ImageFile(imageFile), new ImageFile(subFolderedImageFile)));
+    AbsTaggableFile[] results = taggableFileManager.getTaggableFiles("Image", true);
+    assertEquals(expectedResults, new HashSet<>(Arrays.asList(results)));
+    for (AbsTaggableFile result : results) {
+      assertTrue(result.getAttributes().isRegularFile());
+    }
+  }
+
+  @Test
+  public void testGetLocalImageFilesWithNio() {
+    taggableFileManager.setScanMode(ScanMode.NIO);
+    ImageFile[] expectedResults = new ImageFile[] {new ImageFile(imageFile)};
+    Assert.assertArrayEquals(expectedResults, taggableFileManager.getTaggableFiles("Image", false));
+  }
+
+  @Test
+  public void testGetAllFilesByType() {
+    Map<String, AbsTaggableFile[]> results = taggableFileManager.getTaggableFilesByType(true);
+    assertEquals(
+        new HashSet<>(
+            Arrays.asList(new ImageFile(imageFile), new ImageFile(subFolderedImageFile))),
+        new HashSet<>(Arrays.asList(results.get(FileTypeRegistry.IMAGE))));
+    assertEquals(
+        new HashSet<>(
+            Arrays.asList(
+                new GeneralFile(nonTaggableFile), new GeneralFile(subFolderedNonTaggableFile))),
+        new HashSet<>(Arrays.asList(results.get(FileTypeRegistry.TEXT))));
+    assertEquals(0, results.get(FileTypeRegistry.AUDIO).length);
+  }
+
+  @Test
+  public void testGetLocalFilesOfRegisteredType() throws IOException {
+    File rawFile = folder.newFile("RawFile.CR2");
+    taggableFileManager.getFileTypes().register("Raw", "cr2");
+    GeneralFile[] expectedResults = new GeneralFile[] {new GeneralFile(rawFile)};
+    Assert.assertArrayEquals(expectedResults, taggableFileManager.getTaggableFiles("Raw", false));
+  }
+
+  @Test
+  public void testWatchingSeesTheModelsOwnRenamesAndMoves() throws Exception {
+    taggableFileManager.setScanMode(ScanMode.WATCH);
+    AbsTaggableFile[] files = taggableFileManager.getTaggableFiles("Image", true);
+    assertEquals(2, files.length);
+    AbsTaggableFile renamed = files[0].getFile().equals(imageFile) ? files[0] : files[1];
+    AbsTaggableFile moved = renamed == files[0] ? files[1] : files[0];
+    renamed.addTag(new String[] {"Tag3"});
+    File otherFolder = folder.newFolder("OtherFolder");
+    moved.moveFile(otherFolder.getPath());
+    // Scanned straight away, before the WatchService could have reported the changes.
+    Set<File> results = new HashSet<>();
+    for (AbsTaggableFile absTaggableFile : taggableFileManager.getTaggableFiles("Image", true)) {
+      assertTrue(absTaggableFile == renamed || absTaggableFile == moved);
+      results.add(absTaggableFile.getFile());
+    }
+    assertEquals(new HashSet<>(Arrays.asList(renamed.getFile(), moved.getFile())), results);
+    assertEquals(1, taggableFileManager.getTaggableFilesWithTags(new String[] {"Tag3"}).length);
+  }
+
+  @Test
+  public void testWatchingSeesDeletedTags() {
+    taggableFileManager.setScanMode(ScanMode.WATCH);
+    AbsTaggableFile[] files = taggableFileManager.getTaggableFiles("Image", true);
+    assertEquals(2, files.length);
+    assertTrue(taggableFileManager.deleteTag(new String[] {"Tag1", "Tag2"}));
+    // Scanned straight away, before the WatchService could have reported the renames.
+    Set<File> results = new HashSet<>();
+    for (AbsTaggableFile absTaggableFile : taggableFileManager.getTaggableFiles("Image", true)) {
+      assertTrue(absTaggableFile.getFile().exists());
+      assertEquals(0, absTaggableFile.getTags().length);
+      results.add(absTaggableFile.getFile());
+    }
+    assertEquals(
+        new HashSet<>(
+            Arrays.asList(
+                new File(folder.getRoot(), "ImageFile.jpg"),
+                new File(subFolder, "SubFolderedImageFile.png"))),
+        results);
+  }
+
+  @Test
+  public void testHistoryIsKeptUntilTheDirectoryChanges() {
+    TagHistory history = taggableFileManager.getHistory();
+    assertSame(history, taggableFileManager.getHistory());
+    taggableFileManager.changeDirectory(subFolder);
+    TagHistory subFolderHistory = taggableFileManager.getHistory();
+    assertTrue(history != subFolderHistory);
+    assertEquals(subFolder.getAbsoluteFile(), subFolderHistory.getRoot());
+  }
+
+  @Test
+  public void testStreamedFilesAreRegisteredAndIndexed() throws Exception {
+    AbsTaggableFile streamed =
+        taggableFileManager
+            .streamTaggableFiles("Image", false)
+            .findFirst()
+            .orElseThrow(AssertionError::new);
+    streamed.addTag(new String[] {"Streamed"});
+    AbsTaggableFile[] tagged =
+        taggableFileManager.getTaggableFilesWithTags(new String[] {"Streamed"});
+    assertEquals(1, tagged.length);
+    assertSame(streamed, tagged[0]);
+    assertSame(streamed, taggableFileManager.getTaggableFiles("Image", false)[0]);
+    assertSame(streamed, taggableFileManager.getTaggableFiles("Image", false, 0, 1)[0]);
+  }
+
+  @Test
+  public void testStreamAllImageFiles() {
+    ImageFile[] expectedResults =
+        new ImageFile[] {new ImageFile(imageFile), new ImageFile(subFolderedImageFile)};
+    Assert.assertArrayEquals(
+        expectedResults,
+        taggableFileManager.streamTaggableFiles("Image", true).toArray(AbsTaggableFile[]::new));
+  }
+
+  @Test
+  public void testGetPagesOfImageFiles() {
+    Assert.assertArrayEquals(
+        new ImageFile[] {new ImageFile(imageFile)},
+        taggableFileManager.getTaggableFiles("Image", true, 0, 1));
+    Assert.assertArrayEquals(
+        new ImageFile[] {new ImageFile(subFolderedImageFile)},
+        taggableFileManager.getTaggableFiles("Image", true, 1, 1));
+    assertEquals(0, taggableFileManager.getTaggableFiles("Image", true, 2, 1).length);
+  }
+
+  @Test
+  public void testApplyBatch() {
+    AbsTaggableFile[] files = taggableFileManager.getTaggableFiles("Image", true);
+    BatchResult result =
+        taggableFileManager.applyBatch(
+            new TagBatch(files, new String[] {"Tag3"}, new String[] {"Tag1"}), true);
+    assertTrue(result.isSuccessful());
+    assertEquals(2, result.getSucceeded().size());
+    assertTrue(new File(folder.getRoot(), "ImageFile @Tag3.jpg").exists());
+    assertTrue(new File(subFolder, "SubFolderedImageFile @Tag2 @Tag3.png").exists());
+    assertEquals(2, taggableFileManager.getTaggableFilesWithTags(new String[] {"Tag3"}).length);
+    assertEquals(0, taggableFileManager.getTaggableFilesWithTags(new String[] {"Tag1"}).length);
+  }
+
+  @Test
+  public void testApplyBatchRollsBack() throws IOException {
+    AbsTaggableFile[] files = taggableFileManager.getTaggableFiles("Image", true);
+    new File(subFolder, "SubFolderedImageFile @Tag2 @Tag3.png").createNewFile();
+    BatchResult result =
+        taggableFileManager.applyBatch(new TagBatch(files, new String[] {"Tag3"}, null), true);
+    assertTrue(!result.isSuccessful());
+    assertTrue(result.isRolledBack());
+    assertTrue(result.getRollbackFailed().isEmpty());
+    assertTrue(imageFile.exists());
+    assertTrue(subFolderedImageFile.exists());
+    assertEquals(0, taggableFileManager.getTaggableFilesWithTags(new String[] {"Tag3"}).length);
+  }
+
+  @Test
+  public void testBatchesShareTheManagersThreads() {
+    AbsTaggableFile[] files = taggableFileManager.getTaggableFiles("Image", true);
+    int threads = Thread.activeCount();
+    for (int i = 0; i < 20; i++) {
+      String tag = "Batch" + i;
+      assertTrue(
+          taggableFileManager
+              .applyBatch(new TagBatch(files, new String[] {tag}, null), false)
+              .isSuccessful());
+      assertTrue(taggableFileManager.deleteTag(new String[] {tag}));
+    }
+    assertTrue(Thread.activeCount() <= threads + Runtime.getRuntime().availableProcessors());
+  }
+
+  @Test
+  public void testDeleteTagOnlyRenamesFilesWithTheTag() {
+    taggableFileManager.getTaggableFiles("Image", true);
+    List<Integer> progress = Collections.synchronizedList(new ArrayList<>());
+    assertTrue(
+        taggableFileManager.deleteTag(
+            new String[] {"Tag1"}, (done, total) -> progress.add(total)));
+    assertTrue(new File(folder.getRoot(), "ImageFile.jpg").exists());
+    assertTrue(subFolderedImageFile.exists());
+    assertEquals(Collections.singletonList(1), progress);
+    assertEquals(0, taggableFileManager.getTaggableFilesWithTags(new String[] {"Tag1"}).length);
+    assertTrue(!Arrays.asList(taggableFileManager.getAllCurrentTags()).contains("Tag1"));
+  }
+
+  @Test
+  public void testRescanReusesFiles() throws Exception {
+    AbsTaggableFile[] first = taggableFileManager.getTaggableFiles("Image", true);
+    AbsTaggableFile renamed = first[0];
+    renamed.addTag(new String[] {"Tag3"});
+    AbsTaggableFile[] second = taggableFileManager.getTaggableFiles("Image", true);
+    assertEquals(first.length, second.length);
+    for (int i = 0; i < first.length; i++) {
+      assertSame(first[i], second[i]);
+    }
+    assertTrue(renamed.getFile().exists());
+  }
+
   //  @Test
   //  public void testGetAllTags() {
   //    String[] expectedResults = new String[] {"Tag1", "Tag2"};
@@ -0,0 +1,111 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Lazily walks a directory tree depth-first, listing a directory only when the files found before
+ * it have been consumed. Entries are visited in name order, so the same tree always gives the same
+ * order.
+ */
+class TaggableFileSpliterator extends Spliterators.AbstractSpliterator<File> {
+
+  /** the test a file's name must pass to be returned */
+  private final Predicate<String> nameFilter;
+
+  /** true to walk the whole tree, false for just the direct children of the root */
+  private final boolean recursive;
+
+  /** the directories that still have to be listed */
+  private final Deque<Path> directories;
+
+  /** the matching files found but not yet returned */
+  private final Deque<File> found;
+
+  /**
+   * Construct a new TaggableFileSpliterator over the tree under root.
+   *
+   * @param root the directory (or file) to walk
+   * @param nameFilter the test a file's name must pass to be returned
+   * @param recursive true to walk the whole tree, false for just the direct children of root
+   */
+  TaggableFileSpliterator(File root, Predicate<String> nameFilter, boolean recursive) {
+    super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL);
+    this.nameFilter = nameFilter;
+    this.recursive = recursive;
+    directories = new ArrayDeque<>();
+    found = new ArrayDeque<>();
+    if (root.isDirectory()) {
+      directories.push(root.toPath());
+    } else if (root.isFile() && nameFilter.test(root.getName())) {
+      found.add(root);
+    }
+  }
+
+  /**
+   * Returns the next matching file, listing directories until one is found.
+   *
+   * @param action what to do with the next matching file
+   * @return false if there are no more matching files
+   */
+  @Override
+  public boolean tryAdvance(Consumer<? super File> action) {
+    while (found.isEmpty() && !directories.isEmpty()) {
+      list(directories.pop());
+    }
+    if (found.isEmpty()) {
+      return false;
+    }
+    action.accept(found.poll());
+    return true;
+  }
+
+  /**
+   * Lists a directory, queueing its matching files and (if recursive) its subdirectories.
+   *
+   * @param directory the directory to list
+   */
+  private void list(Path directory) {
+    List<Path> files = new ArrayList<>();
+    List<Path> subdirectories = new ArrayList<>();
+    try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+      for (Path child : children) {
+        BasicFileAttributes attributes;
+        try {
+          attributes = Files.readAttributes(child, BasicFileAttributes.class);
+        } catch (IOException e) {
+          continue;
+        }
+        if (attributes.isRegularFile() && nameFilter.test(child.getFileName().toString())) {
+          files.add(child);
+        } else if (recursive && attributes.isDirectory()) {
+          subdirectories.add(child);
+        }
+      }
+    } catch (IOException e) {
+      return;
+    }
+    Collections.sort(files);
+    for (Path file : files) {
+      found.add(file.toFile());
+    }
+    // Push in reverse so the subdirectories are popped in name order.
+    Collections.sort(subdirectories, Collections.reverseOrder());
+    for (Path subdirectory : subdirectories) {
+      directories.push(subdirectory);
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package viewer;
+
+import javafx.collections.ObservableListBase;
+import model.AbsTaggableFile;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The lines of a file's log as a list for a ListView. Only where each line starts is kept in
+ * memory; the lines the ListView shows are read from the log file as they are shown, so a long log
+ * can be scrolled through without loading all of it. The log file is checked for changes once,
+ * when the list is made, not for every line shown.
+ */
+class LogLines extends ObservableListBase<String> {
+
+  /** the lines of the log when this list was made */
+  private final List<String> lines;
+
+  /**
+   * Construct a list of the lines in a file's log.
+   *
+   * @param file the file whose log to show, or null for an empty list
+   */
+  LogLines(AbsTaggableFile file) {
+    lines = file == null ? Collections.emptyList() : file.getLogLines();
+  }
+
+  /**
+   * Returns a line of the log, formatted for display.
+   *
+   * @param index the line, from 0
+   * @return String
+   */
+  @Override
+  public String get(int index) {
+    return lines.get(index).replaceFirst("/", "->").replaceFirst("/", "|");
+  }
+
+  /**
+   * Returns the number of lines in the log.
+   *
+   * @return int
+   */
+  @Override
+  public int size() {
+    return lines.size();
+  }
+}
@@ -40,6 +40,7 @@ public class Viewer extends Application {
 
     stage.setTitle("Tagger");
     stage.setScene(scene);
+    stage.setOnHidden(event -> controller.close());
     stage.show();
   }
 }
@@ -13,6 +13,9 @@ import javafx.stage.DirectoryChooser;
 import javafx.stage.Stage;
 import javafx.stage.Window;
 import model.AbsTaggableFile;
+import model.FileTypeRegistry;
+import model.ScanMode;
+import model.TagQuery;
 import model.TaggableFileManager;
 
 import java.io.File;
@@ -21,6 +24,9 @@ public class ViewerController {
   /** text to display when there's no image */
   private static final String DEFAULT_IMAGE_NAME = "No Image";
 
+  /** the most tags suggested while a tag is being typed */
+  private static final int MAX_TAG_SUGGESTIONS = 50;
+
   /** Displays all the current Tags */
   public ListView<String> currentTags;
 
@@ -45,6 +51,9 @@ public class ViewerController {
   /** Gets the String representation for a new Tag */
   public TextField tagToCreate;
 
+  /** Gets the boolean tag query that filters the displayed files */
+  public TextField tagQuery;
+
   /** The name of the displayed image */
   public Label imageName;
 
@@ -56,6 +65,9 @@ public class ViewerController {
   /** the Boolean that indicates which mode it is for the TreeView */
   private boolean toggle;
 
+  /** the query the displayed files have to match, or null to display them all */
+  private TagQuery query;
+
   /** the taggableFileManager for this GUI */
   private TaggableFileManager taggableFileManager;
 
@@ -81,11 +93,14 @@ public class ViewerController {
   public ViewerController() {
     toggle = false;
     taggableFileManager = new TaggableFileManager("");
+    // Every view update asks for the files again, so keep them indexed instead of rescanning. The
+    // index starts from the snapshot saved by the last run, so startup only lists changed folders.
+    taggableFileManager.setScanMode(ScanMode.WATCH);
     currentTagsList = FXCollections.observableArrayList();
     directoryTagsList = FXCollections.observableArrayList();
     previousTagsList = FXCollections.observableArrayList();
     viewerList = FXCollections.observableArrayList();
-    logList = FXCollections.observableArrayList();
+    logList = new LogLines(null);
   }
 
   /**
@@ -104,17 +119,23 @@ public class ViewerController {
     previousTags.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
     viewer.setItems(viewerList);
     log.setItems(logList);
-    fileType.getItems().add("Image");
-    fileType.getItems().add("Text");
-    fileType.getItems().add("Audio");
-    fileType.setValue("Image");
+    fileType.getItems().addAll(taggableFileManager.getFileTypes().getTypes());
+    fileType.setValue(FileTypeRegistry.IMAGE);
     fileType
         .getSelectionModel()
         .selectedItemProperty()
         .addListener((observable, oldValue, newValue) -> updateAll());
+    tagToCreate
+        .textProperty()
+        .addListener((observable, oldValue, newValue) -> updateDirectoryTags());
     updateAll();
   }
 
+  /** Stops the threads and the watching of the root the GUI's TaggableFileManager uses. */
+  void close() {
+    taggableFileManager.close();
+  }
+
   /**
    * Ask the viewer for a new directory to change directory.
    *
@@ -185,11 +206,27 @@ public class ViewerController {
     if (taggableFileManager != null) {
       AbsTaggableFile[] imageFiles;
       imageFiles = taggableFileManager.getTaggableFiles(fileType.getValue(), toggle);
+      if (query != null) {
+        imageFiles = taggableFileManager.query(query);
+      }
       viewerList.addAll(imageFiles);
       if (selectedImageFile != null) {
         viewer.getSelectionModel().select(selectedImageFile);
       }
-      directoryTagsList.addAll(taggableFileManager.getAllCurrentTags());
+      updateDirectoryTags();
+    }
+  }
+
+  /**
+   * Updates the list of all Tags, showing only the most used ones that start with the Tag being
+   * typed if there is one.
+   */
+  private void updateDirectoryTags() {
+    String prefix = tagToCreate.getText();
+    if (prefix == null || prefix.isEmpty()) {
+      directoryTagsList.setAll(taggableFileManager.getAllCurrentTags());
+    } else {
+      directoryTagsList.setAll(taggableFileManager.suggestTags(prefix, MAX_TAG_SUGGESTIONS));
     }
   }
 
@@ -199,7 +236,9 @@ public class ViewerController {
     // Clear everything that is to be updated
     currentTagsList.clear();
     previousTagsList.clear();
-    logList.clear();
+    // The log's lines are only read as they're scrolled into view.
+    logList = new LogLines(selectedImageFile);
+    log.setItems(logList);
     imageName.setText(DEFAULT_IMAGE_NAME);
     imageView.setImage(defaultImage);
 
@@ -210,10 +249,6 @@ public class ViewerController {
       currentTagsList.addAll(selectedImageFile.getTags());
       // Update the list of all the previous tags that were assigned to the Image
       previousTagsList.addAll(selectedImageFile.getPreviousTags());
-      // Update the log of all the changes to the Image
-      for (String logEntry : selectedImageFile.getLog()) {
-        logList.add(logEntry.replaceFirst("/", "->").replaceFirst("/", "|"));
-      }
       // Update the name of the Image.
       imageName.setText(selectedImageFile.getName());
       // Update the
@@ -290,6 +325,18 @@ public class ViewerController {
     }
   }
 
+  /** Handles the query action, displaying only the files that match the entered query. */
+  @FXML
+  public void handleQuery() {
+    String text = tagQuery.getText().trim();
+    try {
+      query = text.isEmpty() ? null : TagQuery.parse(text);
+      updateImageFileManagerViews();
+    } catch (IllegalArgumentException e) {
+      e.printStackTrace();
+    }
+  }
+
   /** Handles the move file action. */
   @FXML
   public void handleMoveFile() {